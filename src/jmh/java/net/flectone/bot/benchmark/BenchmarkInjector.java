@@ -0,0 +1,30 @@
+package net.flectone.bot.benchmark;
+
+import com.google.inject.Injector;
+import lombok.SneakyThrows;
+import lombok.experimental.UtilityClass;
+import net.flectone.bot.FlectoneInjector;
+import net.flectone.bot.util.file.FileLoader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// the same bindings as the bot, so benchmarks measure the classes that run in production
+@UtilityClass
+public class BenchmarkInjector {
+
+    @SneakyThrows
+    public Injector create() {
+        Logger logger = LogManager.getLogger(BenchmarkInjector.class);
+        Path projectPath = Files.createTempDirectory("flectonebot-jmh");
+
+        // libraries are already on the jmh classpath, so nothing is downloaded
+        Injector injector = FlectoneInjector.create(logger, projectPath);
+        injector.getInstance(FileLoader.class).init();
+
+        return injector;
+    }
+
+}
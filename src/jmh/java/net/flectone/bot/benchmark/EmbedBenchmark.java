@@ -0,0 +1,70 @@
+package net.flectone.bot.benchmark;
+
+import com.google.inject.Injector;
+import discord4j.core.spec.EmbedCreateSpec;
+import net.flectone.bot.config.Integration;
+import net.flectone.bot.model.discord.ComponentSkeleton;
+import net.flectone.bot.module.discord.cache.EmbedCache;
+import net.flectone.bot.processing.TemplateCompiler;
+import net.flectone.bot.util.file.FileLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmbedBenchmark {
+
+    private TemplateCompiler templateCompiler;
+    private EmbedCache embedCache;
+
+    private Integration.Discord.Ticket.Modal modal;
+    private Map<String, String> placeholders;
+
+    @Setup
+    public void setup() {
+        Injector injector = BenchmarkInjector.create();
+
+        Integration integration = injector.getInstance(FileLoader.class).getDefaultFiles().integration();
+
+        templateCompiler = injector.getInstance(TemplateCompiler.class);
+        templateCompiler.compileAll(integration);
+
+        embedCache = injector.getInstance(EmbedCache.class);
+
+        // a ticket modal has the richest embed in the default config
+        modal = integration.discord().ticket().modals().values().iterator().next();
+
+        placeholders = Map.of(
+                "name", "Add more messages",
+                "username", "thefaser",
+                "skin", "https://cdn.discordapp.com/embed/avatars/0.png",
+                "description", "I would like the bot to relay forum threads as well",
+                "platform", "Paper 1.21.11 (Velocity). FlectonePulse 1.7.3"
+        );
+    }
+
+    // what MessageSender.createEmbed does for every message
+    @Benchmark
+    public EmbedCreateSpec render() {
+        return embedCache.getEmbed(modal.embed()).render(templateCompiler.formatter(placeholders));
+    }
+
+    // the first message after a config reload builds the skeleton again
+    @Benchmark
+    public EmbedCreateSpec renderUncached() {
+        embedCache.invalidate();
+        return embedCache.getEmbed(modal.embed()).render(templateCompiler.formatter(placeholders));
+    }
+
+    @Benchmark
+    public ComponentSkeleton components() {
+        return embedCache.getComponents(modal);
+    }
+
+}
@@ -0,0 +1,42 @@
+package net.flectone.bot.benchmark;
+
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+import net.flectone.bot.model.file.FilePack;
+import net.flectone.bot.util.constant.FilePath;
+import net.flectone.bot.util.file.FileLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileLoaderBenchmark {
+
+    private FileLoader fileLoader;
+
+    @Setup
+    public void setup() {
+        Injector injector = BenchmarkInjector.create();
+
+        fileLoader = injector.getInstance(FileLoader.class);
+
+        // files the bot has written itself are skipped on load, a user edit makes them read and merged
+        Path projectPath = injector.getInstance(Key.get(Path.class, Names.named("projectPath")));
+        for (FilePath filePath : FilePath.values()) {
+            projectPath.resolve(filePath.getPath()).toFile().setLastModified(System.currentTimeMillis());
+        }
+    }
+
+    @Benchmark
+    public FilePack loadFiles() {
+        return fileLoader.loadFiles(null);
+    }
+
+}
@@ -0,0 +1,80 @@
+package net.flectone.bot.benchmark;
+
+import net.flectone.bot.config.Integration;
+import net.flectone.bot.model.route.DiscordTarget;
+import net.flectone.bot.model.route.RouteTable;
+import net.flectone.bot.model.route.TelegramTarget;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteBenchmark {
+
+    private static final long FIRST_CHANNEL = 1275976717487575091L;
+    private static final long FIRST_CHAT = -1002346620480L;
+
+    // bridged channels in the config
+    @Param({"5", "100"})
+    private int channels;
+
+    private Integration integration;
+    private RouteTable routeTable;
+
+    @Setup
+    public void setup() {
+        Map<Long, List<String>> discordChannels = new HashMap<>();
+        Map<String, List<String>> telegramChannels = new HashMap<>();
+
+        for (int i = 0; i < channels; i++) {
+            long channel = FIRST_CHANNEL + i;
+            String chat = FIRST_CHAT + "_" + (i + 1);
+
+            discordChannels.put(channel, List.of(chat));
+            telegramChannels.put(chat, List.of(String.valueOf(channel)));
+        }
+
+        integration = Integration.builder()
+                .discord(Integration.Discord.builder().channels(discordChannels).build())
+                .telegram(Integration.Telegram.builder().channels(telegramChannels).build())
+                .build();
+
+        routeTable = RouteTable.of(integration);
+    }
+
+    @Benchmark
+    public TelegramTarget parseTelegramTarget() {
+        return TelegramTarget.parse("-1002346620480_541");
+    }
+
+    @Benchmark
+    public DiscordTarget parseDiscordTarget() {
+        return DiscordTarget.parse("1271850075064369152_1285574391144644630");
+    }
+
+    // done once per config load
+    @Benchmark
+    public RouteTable build() {
+        return RouteTable.of(integration);
+    }
+
+    // done for every relayed message
+    @Benchmark
+    public List<TelegramTarget> fromDiscord() {
+        return routeTable.fromDiscord(FIRST_CHANNEL + channels - 1);
+    }
+
+    @Benchmark
+    public List<DiscordTarget> fromTelegram() {
+        return routeTable.fromTelegram(FIRST_CHAT, channels);
+    }
+
+}
@@ -0,0 +1,33 @@
+package net.flectone.bot.benchmark;
+
+import net.flectone.bot.processing.SystemVariableResolver;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SystemVariableBenchmark {
+
+    private final SystemVariableResolver systemVariableResolver = new SystemVariableResolver();
+
+    @Benchmark
+    public String plain() {
+        return systemVariableResolver.substituteEnvVars("jdbc:sqlite:FlectoneBot/database.db");
+    }
+
+    @Benchmark
+    public String variable() {
+        return systemVariableResolver.substituteEnvVars("${DISCORD_FLECTONE_BOT_TOKEN}");
+    }
+
+    @Benchmark
+    public String defaultValue() {
+        return systemVariableResolver.substituteEnvVars("jdbc:mysql://${DATABASE_HOST:localhost}:${DATABASE_PORT:3306}/flectonebot");
+    }
+
+}
@@ -0,0 +1,99 @@
+package net.flectone.bot.benchmark;
+
+import com.google.inject.Injector;
+import net.flectone.bot.config.Integration;
+import net.flectone.bot.module.discord.formatter.DiscordFormatter;
+import net.flectone.bot.processing.TemplateCompiler;
+import net.flectone.bot.util.file.FileLoader;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemplateBenchmark {
+
+    private static final String[] SEARCH = {"<user_name>", "<reply>", "<message>"};
+
+    // how many chats a relayed message is sent to
+    @Param({"1", "4"})
+    private int targets;
+
+    private TemplateCompiler templateCompiler;
+    private DiscordFormatter discordFormatter;
+
+    private String telegramMessage;
+    private String discordMessage;
+    private Map<String, String> placeholders;
+    private String[] replacements;
+
+    @Setup
+    public void setup() {
+        Injector injector = BenchmarkInjector.create();
+
+        Integration integration = injector.getInstance(FileLoader.class).getDefaultFiles().integration();
+
+        templateCompiler = injector.getInstance(TemplateCompiler.class);
+        templateCompiler.compileAll(integration);
+
+        discordFormatter = injector.getInstance(DiscordFormatter.class);
+
+        telegramMessage = integration.telegram().message();
+        discordMessage = integration.discord().message();
+
+        placeholders = Map.of(
+                "name", "TheFaser",
+                "global_name", "TheFaser",
+                "nickname", "faser",
+                "display_name", "TheFaser",
+                "user_name", "thefaser",
+                "message", "Hello from the other side, how is the new release going?",
+                "reply", ""
+        );
+
+        replacements = new String[]{placeholders.get("user_name"), placeholders.get("reply"), placeholders.get("message")};
+    }
+
+    // the way the listeners formatted messages before templates were compiled
+    @Benchmark
+    public void replaceEach(Blackhole blackhole) {
+        for (int i = 0; i < targets; i++) {
+            blackhole.consume(StringUtils.replaceEach(telegramMessage, SEARCH, replacements));
+        }
+    }
+
+    @Benchmark
+    public void format(Blackhole blackhole) {
+        for (int i = 0; i < targets; i++) {
+            blackhole.consume(templateCompiler.format(telegramMessage, placeholders));
+        }
+    }
+
+    @Benchmark
+    public void formatter(Blackhole blackhole) {
+        UnaryOperator<String> formatter = templateCompiler.formatter(placeholders);
+        for (int i = 0; i < targets; i++) {
+            blackhole.consume(formatter.apply(telegramMessage));
+        }
+    }
+
+    @Benchmark
+    public String formatMessage() {
+        return discordFormatter.formatMessage(discordMessage, placeholders);
+    }
+
+    // user input is not compiled ahead of time
+    @Benchmark
+    public String formatUncompiled() {
+        return templateCompiler.format(placeholders.get("message") + " <user_name>", placeholders);
+    }
+
+}
@@ -0,0 +1,253 @@
+package net.flectone.bot.loadtest;
+
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.http.websocket.WebsocketInbound;
+import reactor.netty.http.websocket.WebsocketOutbound;
+import tools.jackson.databind.JsonNode;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+// rest api, webhooks and a gateway that only knows hello, identify, heartbeats and the dispatches the load test sends
+public class DiscordStub extends StubServer {
+
+    private static final int HEARTBEAT_INTERVAL = 41250;
+    private static final long FIRST_MESSAGE = 920000000000000000L;
+    private static final long FIRST_USER = 930000000000000000L;
+    private static final long FIRST_WEBHOOK = 940000000000000000L;
+
+    private final Map<Long, Long> webhookChannels = new ConcurrentHashMap<>();
+    private final AtomicLong messageIds = new AtomicLong(FIRST_MESSAGE);
+    private final AtomicLong webhookIds = new AtomicLong(FIRST_WEBHOOK);
+
+    private final LatencyRecorder recorder;
+
+    private volatile Session session;
+
+    public DiscordStub(LoadSettings settings, LatencyRecorder recorder) {
+        super(settings);
+        this.recorder = recorder;
+    }
+
+    public String getGatewayUrl() {
+        return "ws://127.0.0.1:" + getPort() + "/gateway/ws";
+    }
+
+    // a member of the guild writes in a bridged channel
+    public boolean dispatchMessage(int index, String content) {
+        Session current = session;
+        if (current == null) return false;
+
+        long userId = FIRST_USER + index;
+        String user = "loadtest" + index;
+
+        current.dispatch("MESSAGE_CREATE", """
+                {"id": "%d", "channel_id": "%d", "guild_id": "%d",
+                "author": {"id": "%d", "username": "%s", "discriminator": "0", "global_name": "%s", "avatar": null},
+                "member": {"roles": [], "joined_at": "%s", "deaf": false, "mute": false, "flags": 0, "nick": null, "avatar": null, "premium_since": null, "pending": false},
+                "content": "%s", "timestamp": "%s", "edited_timestamp": null, "tts": false, "mention_everyone": false,
+                "mentions": [], "mention_roles": [], "attachments": [], "embeds": [], "pinned": false, "type": 0, "flags": 0, "components": []}
+                """.formatted(messageIds.incrementAndGet(), settings.discordChannel(index), LoadSettings.GUILD_ID,
+                userId, user, user, Instant.EPOCH, content, Instant.now()));
+
+        return true;
+    }
+
+    public boolean isConnected() {
+        return session != null;
+    }
+
+    @Override
+    protected Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response, String path) {
+        String[] segments = path.substring(1).split("/");
+        String method = request.method().name();
+
+        if (path.equals("/gateway/ws")) {
+            return response.sendWebsocket((in, out) -> connect(in, out, request.uri().contains("compress=zlib-stream")));
+        }
+
+        if (method.equals("GET") && (path.equals("/gateway") || path.equals("/gateway/bot"))) {
+            return json(response, 200, """
+                    {"url": "%s", "shards": 1, "session_start_limit": {"total": 1000, "remaining": 1000, "reset_after": 0, "max_concurrency": 1}}
+                    """.formatted(getGatewayUrl()));
+        }
+
+        if (method.equals("GET") && (path.equals("/oauth2/applications/@me") || path.equals("/applications/@me"))) {
+            return json(response, 200, """
+                    {"id": "%d", "name": "FlectoneBot", "icon": null, "description": "", "summary": "", "bot_public": false,
+                    "bot_require_code_grant": false, "verify_key": "", "team": null, "flags": 0, "owner": %s}
+                    """.formatted(LoadSettings.APPLICATION_ID, botUser()));
+        }
+
+        if (method.equals("GET") && path.equals("/users/@me")) {
+            return json(response, 200, botUser());
+        }
+
+        // bulk overwrite of the guild commands
+        if (method.equals("PUT") && segments.length == 5 && segments[0].equals("applications") && segments[4].equals("commands")) {
+            return json(response, 200, "[]");
+        }
+
+        if (segments.length == 3 && segments[0].equals("channels") && segments[2].equals("webhooks")) {
+            long channelId = Long.parseLong(segments[1]);
+
+            if (method.equals("GET")) return json(response, 200, "[]");
+            if (method.equals("POST")) return json(response, 200, createWebhook(channelId));
+        }
+
+        if (method.equals("POST") && segments.length == 3 && segments[0].equals("channels") && segments[2].equals("messages")) {
+            return send(request, response, Long.parseLong(segments[1]), null);
+        }
+
+        if (method.equals("POST") && segments.length == 3 && segments[0].equals("webhooks")) {
+            long webhookId = Long.parseLong(segments[1]);
+            return send(request, response, webhookChannels.getOrDefault(webhookId, 0L), webhookId);
+        }
+
+        return unhandled(request, response, path);
+    }
+
+    @Override
+    protected String notFound() {
+        return "{\"message\": \"Unknown route\", \"code\": 0}";
+    }
+
+    private Publisher<Void> send(HttpServerRequest request, HttpServerResponse response, long channelId, Long webhookId) {
+        return readBody(request).flatMap(body -> {
+            if (limitSend()) {
+                double retryAfter = settings.retryAfter() / 1000.0;
+
+                return Mono.from(response.status(429)
+                        .header("Content-Type", "application/json")
+                        .header("Retry-After", String.valueOf((long) Math.ceil(retryAfter)))
+                        .header("X-RateLimit-Limit", "5")
+                        .header("X-RateLimit-Remaining", "0")
+                        .header("X-RateLimit-Reset-After", String.valueOf(retryAfter))
+                        .header("X-RateLimit-Bucket", "loadtest")
+                        .header("X-RateLimit-Scope", "user")
+                        .sendString(Mono.just("""
+                                {"message": "You are being rate limited.", "retry_after": %s, "global": false}
+                                """.formatted(retryAfter)))
+                );
+            }
+
+            recorder.deliver(body.path("content").asString());
+
+            String webhook = webhookId == null ? "" : ", \"webhook_id\": \"%d\"".formatted(webhookId);
+            return Mono.from(json(response, 200, """
+                    {"id": "%d", "channel_id": "%d", "author": %s, "content": "", "timestamp": "%s", "edited_timestamp": null,
+                    "tts": false, "mention_everyone": false, "mentions": [], "mention_roles": [], "attachments": [], "embeds": [],
+                    "pinned": false, "type": 0, "flags": 0, "components": []%s}
+                    """.formatted(messageIds.incrementAndGet(), channelId, botUser(), Instant.now(), webhook)));
+        });
+    }
+
+    private String createWebhook(long channelId) {
+        long webhookId = webhookIds.incrementAndGet();
+        webhookChannels.put(webhookId, channelId);
+
+        return """
+                {"id": "%d", "type": 1, "guild_id": "%d", "channel_id": "%d", "name": "FlectoneBotWebhook", "avatar": null,
+                "token": "loadtest", "application_id": "%d", "user": %s}
+                """.formatted(webhookId, LoadSettings.GUILD_ID, channelId, LoadSettings.APPLICATION_ID, botUser());
+    }
+
+    private String botUser() {
+        return """
+                {"id": "%d", "username": "FlectoneBot", "discriminator": "0000", "global_name": null, "avatar": null, "bot": true}
+                """.formatted(LoadSettings.APPLICATION_ID).strip();
+    }
+
+    private Publisher<Void> connect(WebsocketInbound in, WebsocketOutbound out, boolean compress) {
+        Session connected = new Session();
+        connected.send("{\"op\": 10, \"d\": {\"heartbeat_interval\": %d}, \"s\": null, \"t\": null}".formatted(HEARTBEAT_INTERVAL));
+
+        Mono<Void> inbound = in.receive()
+                .asString()
+                .doOnNext(payload -> onPayload(connected, payload))
+                .doFinally(signal -> {
+                    if (session == connected) {
+                        session = null;
+                    }
+
+                    connected.payloads.tryEmitComplete();
+                })
+                .then();
+
+        // discord4j asks for zlib-stream, every payload is a sync flushed part of one deflate stream
+        Mono<Void> outbound = compress
+                ? out.sendByteArray(connected.payloads.asFlux().map(connected::compress)).then()
+                : out.sendString(connected.payloads.asFlux()).then();
+
+        return Mono.when(inbound, outbound);
+    }
+
+    private void onPayload(Session connected, String payload) {
+        JsonNode node;
+        try {
+            node = jsonMapper.readTree(payload);
+        } catch (Exception e) {
+            return;
+        }
+
+        switch (node.path("op").asInt(-1)) {
+            // heartbeat
+            case 1 -> connected.send("{\"op\": 11, \"d\": null, \"s\": null, \"t\": null}");
+            // identify, there are no guilds, so the bot is ready right away
+            case 2 -> {
+                connected.dispatch("READY", """
+                        {"v": 10, "user": %s, "guilds": [], "session_id": "loadtest", "resume_gateway_url": "%s",
+                        "shard": [0, 1], "application": {"id": "%d", "flags": 0}, "private_channels": [], "_trace": []}
+                        """.formatted(botUser(), getGatewayUrl(), LoadSettings.APPLICATION_ID));
+
+                session = connected;
+            }
+            // resume, a new session is cheaper than replaying the dispatches
+            case 6 -> connected.send("{\"op\": 9, \"d\": false, \"s\": null, \"t\": null}");
+            default -> {}
+        }
+    }
+
+    private static class Session {
+
+        private final Sinks.Many<String> payloads = Sinks.many().unicast().onBackpressureBuffer();
+        private final Deflater deflater = new Deflater();
+        private final byte[] buffer = new byte[8192];
+
+        private int sequence;
+
+        // the generator and the inbound handler both send, the sequence has to match the order on the wire
+        private synchronized void send(String payload) {
+            payloads.tryEmitNext(payload);
+        }
+
+        private synchronized void dispatch(String type, String data) {
+            send("{\"op\": 0, \"s\": %d, \"t\": \"%s\", \"d\": %s}".formatted(++sequence, type, data.strip()));
+        }
+
+        private byte[] compress(String payload) {
+            deflater.setInput(payload.getBytes(StandardCharsets.UTF_8));
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            int length;
+            do {
+                length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                output.write(buffer, 0, length);
+            } while (length == buffer.length);
+
+            return output.toByteArray();
+        }
+
+    }
+
+}
@@ -0,0 +1,99 @@
+package net.flectone.bot.loadtest;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// generated messages carry a marker, the stub of the other platform finds it in what the bot sent
+public class LatencyRecorder {
+
+    private static final Pattern MARKER = Pattern.compile("#lt(\\d+)");
+
+    private final Map<Long, Long> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong lastDeliveredAt = new AtomicLong();
+
+    @Getter private final String name;
+
+    // preallocated, the recorder should not be what the memory report measures
+    private final long[] samples;
+
+    private volatile long firstSentAt;
+
+    public LatencyRecorder(String name, long capacity) {
+        this.name = name;
+        this.samples = new long[Math.toIntExact(Math.min(Integer.MAX_VALUE - 8, capacity))];
+    }
+
+    public String mark(long sequence) {
+        long now = System.nanoTime();
+        if (sent.getAndIncrement() == 0) {
+            firstSentAt = now;
+        }
+
+        pending.put(sequence, now);
+        return "#lt" + sequence;
+    }
+
+    // a batched message holds several markers
+    public void deliver(String text) {
+        if (text == null) return;
+
+        Matcher matcher = MARKER.matcher(text);
+        while (matcher.find()) {
+            Long sentAt = pending.remove(Long.parseLong(matcher.group(1)));
+            if (sentAt == null) continue;
+
+            long now = System.nanoTime();
+            lastDeliveredAt.accumulateAndGet(now, Math::max);
+
+            int index = size.getAndIncrement();
+            if (index < samples.length) {
+                samples[index] = now - sentAt;
+            }
+        }
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getDelivered() {
+        return Math.min(size.get(), samples.length);
+    }
+
+    public boolean isDrained() {
+        return pending.isEmpty();
+    }
+
+    public double getThroughput() {
+        long elapsed = lastDeliveredAt.get() - firstSentAt;
+        if (elapsed <= 0) return 0;
+
+        return getDelivered() * 1_000_000_000.0 / elapsed;
+    }
+
+    public Percentiles percentiles() {
+        long[] sorted = Arrays.copyOf(samples, (int) getDelivered());
+        Arrays.sort(sorted);
+
+        return new Percentiles(percentile(sorted, 0.5), percentile(sorted, 0.99), sorted.length == 0 ? 0 : sorted[sorted.length - 1]);
+    }
+
+    private long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    public record Percentiles(long p50, long p99, long max) {}
+
+}
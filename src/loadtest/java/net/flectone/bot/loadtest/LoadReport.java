@@ -0,0 +1,96 @@
+package net.flectone.bot.loadtest;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class LoadReport {
+
+    private static final double MEGABYTE = 1024 * 1024;
+
+    private final LoadSettings settings;
+    private final List<LatencyRecorder> recorders;
+    private final List<StubServer> stubs;
+
+    private MemorySample before;
+
+    // peaks are reset, so startup does not count towards the load
+    public void start() {
+        heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+        before = MemorySample.take();
+    }
+
+    public void print(Logger logger) {
+        MemorySample after = MemorySample.take();
+        long peak = heapPools().stream()
+                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                .sum();
+
+        logger.info("Load test: {} messages/s per direction for {} s over {} bridged channels, rate_limit_every={}",
+                settings.rate(), settings.duration(), settings.channels(), settings.rateLimitEvery());
+
+        recorders.forEach(recorder -> {
+            LatencyRecorder.Percentiles percentiles = recorder.percentiles();
+
+            logger.info("{}: sent={}, delivered={}, lost={}, throughput={} messages/s, p50={} ms, p99={} ms, max={} ms",
+                    recorder.getName(),
+                    recorder.getSent(),
+                    recorder.getDelivered(),
+                    recorder.getSent() - recorder.getDelivered(),
+                    "%.1f".formatted(recorder.getThroughput()),
+                    millis(percentiles.p50()),
+                    millis(percentiles.p99()),
+                    millis(percentiles.max())
+            );
+        });
+
+        stubs.forEach(stub -> logger.info("{}: requests={}, answered with 429={}, unhandled={}",
+                stub.getClass().getSimpleName(),
+                stub.getRequests(),
+                stub.getRateLimited(),
+                stub.getUnhandled()
+        ));
+
+        logger.info("Memory: heap before={} MB, after={} MB, peak={} MB, gc={} collections in {} ms",
+                "%.1f".formatted(before.heapUsed() / MEGABYTE),
+                "%.1f".formatted(after.heapUsed() / MEGABYTE),
+                "%.1f".formatted(peak / MEGABYTE),
+                after.gcCount() - before.gcCount(),
+                after.gcTime() - before.gcTime()
+        );
+    }
+
+    private String millis(long nanos) {
+        return "%.1f".formatted(nanos / 1_000_000.0);
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+    }
+
+    private record MemorySample(long heapUsed, long gcCount, long gcTime) {
+
+        private static MemorySample take() {
+            long gcCount = 0;
+            long gcTime = 0;
+
+            // -1 means the collector does not report it
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount += Math.max(0, collector.getCollectionCount());
+                gcTime += Math.max(0, collector.getCollectionTime());
+            }
+
+            return new MemorySample(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), gcCount, gcTime);
+        }
+
+    }
+
+}
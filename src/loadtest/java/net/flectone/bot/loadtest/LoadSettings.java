@@ -0,0 +1,43 @@
+package net.flectone.bot.loadtest;
+
+// every value can be set with -Ploadtest.<name>=<value>
+public record LoadSettings(
+        int rate,
+        int duration,
+        int channels,
+        int rateLimitEvery,
+        long retryAfter,
+        int drainTimeout
+) {
+
+    public static final long GUILD_ID = 900000000000000000L;
+    public static final long APPLICATION_ID = 900000000000000001L;
+
+    private static final long FIRST_CHANNEL = 910000000000000000L;
+    private static final long FIRST_CHAT = -1009000000000L;
+
+    public static LoadSettings fromSystemProperties() {
+        return new LoadSettings(
+                Math.max(1, Integer.getInteger("loadtest.rate", 5)),
+                Math.max(1, Integer.getInteger("loadtest.duration", 30)),
+                Math.max(1, Integer.getInteger("loadtest.channels", 20)),
+                Math.max(0, Integer.getInteger("loadtest.rate_limit_every", 50)),
+                Math.max(0, Long.getLong("loadtest.retry_after", 1000L)),
+                Math.max(1, Integer.getInteger("loadtest.drain_timeout", 60))
+        );
+    }
+
+    // bridged pairs, channel i of discord is relayed to chat i of telegram and back
+    public long discordChannel(int index) {
+        return FIRST_CHANNEL + index;
+    }
+
+    public long telegramChat(int index) {
+        return FIRST_CHAT - index;
+    }
+
+    public long expectedMessages() {
+        return (long) rate * duration;
+    }
+
+}
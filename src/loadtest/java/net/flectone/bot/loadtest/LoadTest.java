@@ -0,0 +1,147 @@
+package net.flectone.bot.loadtest;
+
+import com.google.inject.Injector;
+import net.flectone.bot.FlectoneInjector;
+import net.flectone.bot.config.Integration;
+import net.flectone.bot.model.file.FilePack;
+import net.flectone.bot.model.mapping.Platform;
+import net.flectone.bot.module.BotReadiness;
+import net.flectone.bot.module.discord.DiscordBot;
+import net.flectone.bot.module.telegram.TelegramBot;
+import net.flectone.bot.util.file.FileFacade;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// relays generated messages both ways through local stubs of the discord and telegram apis
+public class LoadTest {
+
+    private static final String TOKEN = "loadtest";
+
+    public static void main(String[] args) throws Exception {
+        Logger logger = LogManager.getLogger(LoadTest.class);
+        LoadSettings settings = LoadSettings.fromSystemProperties();
+
+        LatencyRecorder telegramToDiscord = new LatencyRecorder("Telegram -> Discord", settings.expectedMessages());
+        LatencyRecorder discordToTelegram = new LatencyRecorder("Discord -> Telegram", settings.expectedMessages());
+
+        DiscordStub discordStub = new DiscordStub(settings, telegramToDiscord);
+        TelegramStub telegramStub = new TelegramStub(settings, discordToTelegram);
+        discordStub.start();
+        telegramStub.start();
+
+        // libraries are already on the load test classpath, so nothing is downloaded
+        Injector injector = FlectoneInjector.create(logger, Files.createTempDirectory("flectonebot-loadtest"));
+
+        FileFacade fileFacade = injector.getInstance(FileFacade.class);
+        fileFacade.reload();
+        fileFacade.updateFilePack(files -> configure(files, settings, discordStub, telegramStub));
+
+        DiscordBot discordBot = injector.getInstance(DiscordBot.class);
+        TelegramBot telegramBot = injector.getInstance(TelegramBot.class);
+        BotReadiness botReadiness = injector.getInstance(BotReadiness.class);
+
+        try (ExecutorService startupExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            botReadiness.start(startupExecutor, Platform.DISCORD, discordBot);
+            botReadiness.start(startupExecutor, Platform.TELEGRAM, telegramBot);
+        }
+
+        if (!botReadiness.await(Platform.DISCORD) || !botReadiness.await(Platform.TELEGRAM) || !discordStub.isConnected()) {
+            logger.error("Bridge did not start against the stubs");
+            System.exit(1);
+        }
+
+        LoadReport report = new LoadReport(settings, List.of(telegramToDiscord, discordToTelegram), List.of(discordStub, telegramStub));
+        report.start();
+
+        generate(settings, telegramToDiscord, discordToTelegram, discordStub, telegramStub);
+
+        // messages still in the queues or waiting for a 429 to pass
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(settings.drainTimeout());
+        while ((!telegramToDiscord.isDrained() || !discordToTelegram.isDrained()) && System.nanoTime() < drainDeadline) {
+            Thread.sleep(100);
+        }
+
+        report.print(logger);
+
+        discordBot.shutdown();
+        telegramBot.shutdown();
+        discordStub.stop();
+        telegramStub.stop();
+
+        System.exit(0);
+    }
+
+    // one message per direction on every tick, spread over the bridged channels
+    private static void generate(LoadSettings settings,
+                                 LatencyRecorder telegramToDiscord,
+                                 LatencyRecorder discordToTelegram,
+                                 DiscordStub discordStub,
+                                 TelegramStub telegramStub) throws InterruptedException {
+        ScheduledExecutorService generator = Executors.newSingleThreadScheduledExecutor();
+        CountDownLatch generated = new CountDownLatch(1);
+
+        AtomicLong ticks = new AtomicLong();
+        AtomicLong sequence = new AtomicLong();
+        long total = settings.expectedMessages();
+
+        generator.scheduleAtFixedRate(() -> {
+            long tick = ticks.getAndIncrement();
+            if (tick >= total) {
+                generated.countDown();
+                return;
+            }
+
+            int index = (int) (tick % settings.channels());
+
+            telegramStub.pushMessage(index, "load test message " + telegramToDiscord.mark(sequence.incrementAndGet()));
+            discordStub.dispatchMessage(index, "load test message " + discordToTelegram.mark(sequence.incrementAndGet()));
+        }, 0, TimeUnit.SECONDS.toNanos(1) / settings.rate(), TimeUnit.NANOSECONDS);
+
+        generated.await();
+        generator.shutdownNow();
+    }
+
+    // the default files with every bridged pair and both apis pointed at the stubs
+    private static FilePack configure(FilePack files, LoadSettings settings, DiscordStub discordStub, TelegramStub telegramStub) {
+        Map<Long, List<String>> discordChannels = new HashMap<>();
+        Map<String, List<String>> telegramChannels = new HashMap<>();
+
+        for (int i = 0; i < settings.channels(); i++) {
+            String chat = String.valueOf(settings.telegramChat(i));
+
+            discordChannels.put(settings.discordChannel(i), List.of(chat));
+            telegramChannels.put(chat, List.of(String.valueOf(settings.discordChannel(i))));
+        }
+
+        Integration integration = files.integration();
+        Integration.Discord discord = integration.discord();
+
+        return files
+                // a log line per message would measure the console instead of the bridge
+                .withConfig(files.config().withLog(files.config().log().withRelay(false)))
+                .withIntegration(integration
+                        .withDiscord(discord.toBuilder()
+                                .token(TOKEN)
+                                .apiUrl(discordStub.getUrl())
+                                .guildId(LoadSettings.GUILD_ID)
+                                .channels(discordChannels)
+                                .presence(discord.presence().withEnable(false))
+                                .build()
+                        )
+                        .withTelegram(integration.telegram().toBuilder()
+                                .token(TOKEN)
+                                .apiUrl(telegramStub.getUrl())
+                                .channels(telegramChannels)
+                                .build()
+                        )
+                );
+    }
+
+}
@@ -0,0 +1,103 @@
+package net.flectone.bot.loadtest;
+
+import lombok.Getter;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// local stand-in for a platform api, answers only what the bot calls and counts everything else
+public abstract class StubServer {
+
+    protected final JsonMapper jsonMapper = JsonMapper.builder().build();
+    protected final LoadSettings settings;
+
+    @Getter private final Set<String> unhandled = ConcurrentHashMap.newKeySet();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final AtomicLong sends = new AtomicLong();
+
+    private DisposableServer server;
+
+    protected StubServer(LoadSettings settings) {
+        this.settings = settings;
+    }
+
+    public void start() {
+        server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .handle((request, response) -> {
+                    requests.increment();
+                    return handle(request, response, URI.create(request.uri()).getPath());
+                })
+                .bindNow();
+    }
+
+    public void stop() {
+        if (server == null) return;
+
+        server.disposeNow();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.port();
+    }
+
+    public int getPort() {
+        return server.port();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    protected abstract Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response, String path);
+
+    protected abstract String notFound();
+
+    // every n-th message is answered with 429, the bot has to wait and send it again
+    protected boolean limitSend() {
+        int every = settings.rateLimitEvery();
+        if (every <= 0 || sends.incrementAndGet() % every != 0) return false;
+
+        rateLimited.increment();
+        return true;
+    }
+
+    protected Mono<JsonNode> readBody(HttpServerRequest request) {
+        return request.receive()
+                .aggregate()
+                .asString(StandardCharsets.UTF_8)
+                .defaultIfEmpty("")
+                .map(body -> body.isBlank() ? jsonMapper.createObjectNode() : jsonMapper.readTree(body))
+                .onErrorResume(e -> Mono.just(jsonMapper.createObjectNode()));
+    }
+
+    protected Publisher<Void> json(HttpServerResponse response, int status, String body) {
+        return response.status(status)
+                .header("Content-Type", "application/json")
+                .sendString(Mono.just(body));
+    }
+
+    protected Publisher<Void> unhandled(HttpServerRequest request, HttpServerResponse response, String path) {
+        unhandled.add(request.method().name() + " " + path);
+        return json(response, 404, notFound());
+    }
+
+}
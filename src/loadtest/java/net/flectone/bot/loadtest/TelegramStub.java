@@ -0,0 +1,111 @@
+package net.flectone.bot.loadtest;
+
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+import tools.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// bot api methods the bridge calls, updates are queued by the load test and handed out by long polling
+public class TelegramStub extends StubServer {
+
+    private static final long FIRST_USER = 950000000L;
+    private static final long MAX_POLL_WAIT = 1000;
+    private static final int MAX_UPDATES = 100;
+
+    private final BlockingQueue<String> updates = new LinkedBlockingQueue<>();
+    private final AtomicLong updateIds = new AtomicLong();
+    private final AtomicLong messageIds = new AtomicLong();
+
+    private final LatencyRecorder recorder;
+
+    public TelegramStub(LoadSettings settings, LatencyRecorder recorder) {
+        super(settings);
+        this.recorder = recorder;
+    }
+
+    // a user writes in a bridged chat
+    public void pushMessage(int index, String text) {
+        long now = System.currentTimeMillis() / 1000;
+
+        updates.add("""
+                {"update_id": %d, "message": {"message_id": %d, "date": %d,
+                "from": {"id": %d, "is_bot": false, "first_name": "Load", "username": "loadtest%d"},
+                "chat": {"id": %d, "type": "supergroup", "title": "Load test %d"}, "text": "%s"}}
+                """.formatted(updateIds.incrementAndGet(), messageIds.incrementAndGet(), now,
+                FIRST_USER + index, index, settings.telegramChat(index), index, text).strip());
+    }
+
+    @Override
+    protected Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response, String path) {
+        // /bot<token>/<method>
+        int methodIndex = path.lastIndexOf('/');
+        if (!path.startsWith("/bot") || methodIndex <= 0) return unhandled(request, response, path);
+
+        return switch (path.substring(methodIndex + 1)) {
+            case "getUpdates" -> readBody(request)
+                    .publishOn(Schedulers.boundedElastic())
+                    .flatMap(body -> Mono.from(ok(response, poll(body.path("timeout").asInt(0)))));
+            case "sendMessage" -> readBody(request).flatMap(body -> Mono.from(sendMessage(response, body)));
+            case "getUserProfilePhotos" -> ok(response, """
+                    {"total_count": 1, "photos": [[{"file_id": "avatar", "file_unique_id": "avatar", "width": 160, "height": 160, "file_size": 1024}]]}
+                    """);
+            case "getFile" -> ok(response, """
+                    {"file_id": "avatar", "file_unique_id": "avatar", "file_size": 1024, "file_path": "photos/avatar.jpg"}
+                    """);
+            default -> unhandled(request, response, path);
+        };
+    }
+
+    @Override
+    protected String notFound() {
+        return "{\"ok\": false, \"error_code\": 404, \"description\": \"Not Found\"}";
+    }
+
+    // waits at most a second, so the poller notices new updates quickly without spinning
+    private String poll(int timeout) {
+        List<String> batch = new ArrayList<>();
+
+        try {
+            String first = updates.poll(Math.min(MAX_POLL_WAIT, TimeUnit.SECONDS.toMillis(timeout)), TimeUnit.MILLISECONDS);
+            if (first != null) {
+                batch.add(first);
+                updates.drainTo(batch, MAX_UPDATES - 1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return "[" + String.join(",", batch) + "]";
+    }
+
+    private Publisher<Void> sendMessage(HttpServerResponse response, JsonNode body) {
+        if (limitSend()) {
+            long retryAfter = Math.max(1, (long) Math.ceil(settings.retryAfter() / 1000.0));
+
+            return json(response, 429, """
+                    {"ok": false, "error_code": 429, "description": "Too Many Requests: retry after %d", "parameters": {"retry_after": %d}}
+                    """.formatted(retryAfter, retryAfter));
+        }
+
+        String text = body.path("text").asString();
+        recorder.deliver(text);
+
+        return ok(response, """
+                {"message_id": %d, "date": %d, "chat": {"id": %s, "type": "supergroup", "title": "Load test"}, "text": ""}
+                """.formatted(messageIds.incrementAndGet(), System.currentTimeMillis() / 1000, body.path("chat_id").asString()));
+    }
+
+    private Publisher<Void> ok(HttpServerResponse response, String result) {
+        return json(response, 200, "{\"ok\": true, \"result\": " + result.strip() + "}");
+    }
+
+}
@@ -2,23 +2,31 @@ package net.flectone.bot;
 
 import com.alessiodp.libby.LibraryManager;
 import com.alessiodp.libby.StandaloneLibraryManager;
-import com.google.inject.Guice;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.Singleton;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
+import net.flectone.bot.data.database.Database;
+import net.flectone.bot.data.repository.MessageMappingRepository;
+import net.flectone.bot.model.mapping.Platform;
+import net.flectone.bot.module.BotReadiness;
 import net.flectone.bot.module.discord.DiscordBot;
 import net.flectone.bot.module.telegram.TelegramBot;
 import net.flectone.bot.platform.adapter.LoggerAdapter;
 import net.flectone.bot.platform.resolver.LibraryResolver;
 import net.flectone.bot.util.file.FileFacade;
+import net.flectone.bot.util.file.FileWatcher;
+import net.flectone.bot.util.metrics.MetricBinder;
+import net.flectone.bot.util.metrics.MetricsServer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Singleton
 @RequiredArgsConstructor(onConstructor = @__(@Inject))
@@ -39,7 +47,7 @@ public class FlectoneBot {
         libraryResolver.resolveRepositories();
         libraryResolver.loadLibraries();
 
-        Injector injector = Guice.createInjector(new FlectoneInjector(logger, projectPath, loggerAdapter, libraryManager, libraryResolver));
+        Injector injector = FlectoneInjector.create(logger, projectPath, loggerAdapter, libraryManager, libraryResolver);
         FlectoneBot flectoneBot = new FlectoneBot(injector);
         flectoneBot.start();
     }
@@ -52,18 +60,42 @@ public class FlectoneBot {
         FileFacade fileFacade = injector.getInstance(FileFacade.class);
         fileFacade.reload();
 
-        DiscordBot discordBot = injector.getInstance(DiscordBot.class);
-        discordBot.startup();
+        Database database = injector.getInstance(Database.class);
+        MessageMappingRepository messageMappingRepository = injector.getInstance(MessageMappingRepository.class);
+        if (messageMappingRepository.isEnabled()) {
+            database.connect();
+            messageMappingRepository.start();
+        }
 
+        DiscordBot discordBot = injector.getInstance(DiscordBot.class);
         TelegramBot telegramBot = injector.getInstance(TelegramBot.class);
-        telegramBot.startup();
+
+        BotReadiness botReadiness = injector.getInstance(BotReadiness.class);
+
+        // the platforms do not depend on each other to start, closing the executor waits for both
+        try (ExecutorService startupExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            botReadiness.start(startupExecutor, Platform.DISCORD, discordBot);
+            botReadiness.start(startupExecutor, Platform.TELEGRAM, telegramBot);
+        }
+
+        FileWatcher fileWatcher = injector.getInstance(FileWatcher.class);
+        fileWatcher.start();
+
+        injector.getInstance(MetricBinder.class).bind();
+
+        MetricsServer metricsServer = injector.getInstance(MetricsServer.class);
+        metricsServer.start();
 
         CountDownLatch latch = new CountDownLatch(1);
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             logger.info("Shutting down...");
+            fileWatcher.stop();
+            metricsServer.stop();
             discordBot.shutdown();
             telegramBot.shutdown();
+            messageMappingRepository.shutdown();
+            database.disconnect();
         }));
 
         latch.await();
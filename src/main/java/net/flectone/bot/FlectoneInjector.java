@@ -1,10 +1,13 @@
 package net.flectone.bot;
 
 import com.alessiodp.libby.LibraryManager;
+import com.alessiodp.libby.StandaloneLibraryManager;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonSetter;
 import com.fasterxml.jackson.annotation.Nulls;
 import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
 import com.google.inject.name.Names;
 import lombok.SneakyThrows;
 import net.flectone.bot.platform.adapter.LoggerAdapter;
@@ -46,6 +49,23 @@ public class FlectoneInjector extends AbstractModule {
         this.libraryResolver = libraryResolver;
     }
 
+    // guice is one of the loaded libraries, so this class must not be touched before they are loaded
+    public static Injector create(Logger logger,
+                                  Path projectPath,
+                                  LoggerAdapter loggerAdapter,
+                                  LibraryManager libraryManager,
+                                  LibraryResolver libraryResolver) {
+        return Guice.createInjector(new FlectoneInjector(logger, projectPath, loggerAdapter, libraryManager, libraryResolver));
+    }
+
+    // for benchmarks and the load test, they have the libraries on their classpath already
+    public static Injector create(Logger logger, Path projectPath) {
+        LoggerAdapter loggerAdapter = new LoggerAdapter(logger);
+        LibraryManager libraryManager = new StandaloneLibraryManager(loggerAdapter, projectPath, "libraries");
+
+        return create(logger, projectPath, loggerAdapter, libraryManager, new LibraryResolver(libraryManager));
+    }
+
     @SneakyThrows
     @Override
     protected void configure() {
@@ -11,7 +11,15 @@ public record Config(
 
         String language,
 
-        Database database
+        Database database,
+
+        Mapping mapping,
+
+        Metrics metrics,
+
+        Trace trace,
+
+        Log log
 
 ) {
 
@@ -36,4 +44,34 @@ public record Config(
         }
     }
 
+    @With
+    @Builder(toBuilder = true)
+    public record Mapping(Boolean enable,
+                          Integer cacheSize,
+                          Long flushPeriod,
+                          Long ttl,
+                          Long editDelay) {
+    }
+
+    @With
+    @Builder(toBuilder = true)
+    public record Metrics(Boolean enable,
+                          String host,
+                          Integer port,
+                          String path) {
+    }
+
+    @With
+    @Builder(toBuilder = true)
+    public record Trace(Boolean enable,
+                        Integer bufferSize,
+                        Long slowThreshold) {
+    }
+
+    @With
+    @Builder(toBuilder = true)
+    public record Log(Boolean relay,
+                      Integer sampleRate) {
+    }
+
 }
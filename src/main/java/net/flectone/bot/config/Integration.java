@@ -30,8 +30,9 @@ public record Integration(
     @Jacksonized
     public record Discord(
             String token,
+            String apiUrl,
             Long guildId,
-            Map<Long, String> channels,
+            Map<Long, List<String>> channels,
             String formatReply,
             String message,
             String webhookAvatar,
@@ -40,7 +41,9 @@ public record Integration(
             Messages messages,
             Presence presence,
             Ticket ticket,
-            List<Command> commands
+            List<Command> commands,
+            Dispatch dispatch,
+            Batch batch
     ) implements WithEmbed {
 
         @With
@@ -193,6 +196,24 @@ public record Integration(
             ) implements WithPermission, WithEmbed {}
         }
 
+        @With
+        @Builder(toBuilder = true)
+        @Jacksonized
+        public record Dispatch(
+                Integer queueSize,
+                Integer bucketSize,
+                Long bucketPeriod
+        ) {}
+
+        @With
+        @Builder(toBuilder = true)
+        @Jacksonized
+        public record Batch(
+                Boolean enable,
+                Long window,
+                Integer maxLength
+        ) {}
+
         public interface WithPermission {
             @Nullable Long permissionRole();
         }
@@ -227,12 +248,26 @@ public record Integration(
     @Jacksonized
     public record Telegram(
             String token,
+            String apiUrl,
             Mode parseMode,
             String formatReply,
             String message,
-            Map<String, String> channels
+            Map<String, List<String>> channels,
+            Dispatch dispatch
     ) {
 
+        @With
+        @Builder(toBuilder = true)
+        @Jacksonized
+        public record Dispatch(
+                Integer queueSize,
+                Integer globalBucketSize,
+                Long globalBucketPeriod,
+                Integer chatBucketSize,
+                Long chatBucketPeriod,
+                Integer retries
+        ) {}
+
         public enum Mode {
             MARKDOWN,
             MARKDOWN_V2,
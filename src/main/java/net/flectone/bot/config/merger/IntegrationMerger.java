@@ -15,6 +15,8 @@ public interface IntegrationMerger {
     @Mapping(target = "messages", expression = "java(mergeMessages(target.build().messages().toBuilder(), source.messages()))")
     @Mapping(target = "presence", expression = "java(mergePresence(target.build().presence().toBuilder(), source.presence()))")
     @Mapping(target = "ticket", expression = "java(mergeTicket(target.build().ticket().toBuilder(), source.ticket()))")
+    @Mapping(target = "dispatch", expression = "java(mergeDispatch(target.build().dispatch().toBuilder(), source.dispatch()))")
+    @Mapping(target = "batch", expression = "java(mergeBatch(target.build().batch().toBuilder(), source.batch()))")
     Integration.Discord mergeDiscord(@MappingTarget Integration.Discord.DiscordBuilder target, Integration.Discord source);
 
     Integration.Discord.Messages mergeMessages(@MappingTarget Integration.Discord.Messages.MessagesBuilder target, Integration.Discord.Messages source);
@@ -24,7 +26,14 @@ public interface IntegrationMerger {
 
     Integration.Discord.Presence.Activity mergeActivity(@MappingTarget Integration.Discord.Presence.Activity.ActivityBuilder target, Integration.Discord.Presence.Activity activity);
 
+    Integration.Discord.Dispatch mergeDispatch(@MappingTarget Integration.Discord.Dispatch.DispatchBuilder target, Integration.Discord.Dispatch source);
+
+    Integration.Discord.Batch mergeBatch(@MappingTarget Integration.Discord.Batch.BatchBuilder target, Integration.Discord.Batch source);
+
     Integration.Discord.Ticket mergeTicket(@MappingTarget Integration.Discord.Ticket.TicketBuilder target, Integration.Discord.Ticket source);
 
+    @Mapping(target = "dispatch", expression = "java(mergeTelegramDispatch(target.build().dispatch().toBuilder(), telegram.dispatch()))")
     Integration.Telegram mergeTelegram(@MappingTarget Integration.Telegram.TelegramBuilder target, Integration.Telegram telegram);
+
+    Integration.Telegram.Dispatch mergeTelegramDispatch(@MappingTarget Integration.Telegram.Dispatch.DispatchBuilder target, Integration.Telegram.Dispatch source);
 }
\ No newline at end of file
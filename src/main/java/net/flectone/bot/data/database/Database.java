@@ -0,0 +1,151 @@
+package net.flectone.bot.data.database;
+
+import com.alessiodp.libby.Library;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import net.flectone.bot.BuildConfig;
+import net.flectone.bot.config.Config;
+import net.flectone.bot.platform.resolver.LibraryResolver;
+import net.flectone.bot.processing.SystemVariableResolver;
+import net.flectone.bot.util.file.FileFacade;
+import org.apache.logging.log4j.Logger;
+import org.jdbi.v3.core.Jdbi;
+import org.jspecify.annotations.Nullable;
+
+import java.nio.file.Path;
+
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class Database {
+
+    private final FileFacade fileFacade;
+    private final LibraryResolver libraryResolver;
+    private final SystemVariableResolver systemVariableResolver;
+    private final @Named("projectPath") Path projectPath;
+    private final Logger logger;
+
+    private HikariDataSource dataSource;
+    @Getter @Nullable private Jdbi jdbi;
+
+    public Config.Database config() {
+        return fileFacade.config().database();
+    }
+
+    public void connect() {
+        Config.Database.Type type = config().type();
+
+        try {
+            loadDriver(type);
+
+            HikariConfig hikariConfig = createHikariConfig(type);
+            dataSource = new HikariDataSource(hikariConfig);
+            jdbi = Jdbi.create(dataSource);
+
+            logger.info("✔ {} database connected", type);
+        } catch (Exception e) {
+            logger.warn("Failed to connect to {} database", type, e);
+            disconnect();
+        }
+    }
+
+    public void disconnect() {
+        jdbi = null;
+
+        if (dataSource != null) {
+            dataSource.close();
+            dataSource = null;
+        }
+    }
+
+    public boolean isConnected() {
+        return jdbi != null;
+    }
+
+    public String table(String name) {
+        return config().prefix() + name;
+    }
+
+    private HikariConfig createHikariConfig(Config.Database.Type type) {
+        Config.Database database = config();
+
+        String name = systemVariableResolver.substituteEnvVars(database.name());
+        String host = systemVariableResolver.substituteEnvVars(database.host());
+        String port = systemVariableResolver.substituteEnvVars(database.port());
+
+        HikariConfig hikariConfig = new HikariConfig();
+        hikariConfig.setPoolName(BuildConfig.PROJECT_NAME + "Pool");
+        hikariConfig.setDriverClassName(getDriverClass(type));
+
+        switch (type) {
+            case SQLITE -> {
+                hikariConfig.setJdbcUrl("jdbc:sqlite:" + projectPath.resolve(name + ".db").toAbsolutePath());
+                // sqlite has one writer, more connections only wait for the lock
+                hikariConfig.setMaximumPoolSize(1);
+            }
+            case H2 -> {
+                hikariConfig.setJdbcUrl("jdbc:h2:" + projectPath.resolve(name + ".h2").toAbsolutePath() + ";MODE=MySQL");
+                hikariConfig.setMaximumPoolSize(2);
+            }
+            case MYSQL, MARIADB, POSTGRESQL -> {
+                String protocol = switch (type) {
+                    case MARIADB -> "mariadb";
+                    case POSTGRESQL -> "postgresql";
+                    default -> "mysql";
+                };
+
+                hikariConfig.setJdbcUrl("jdbc:" + protocol + "://" + host + ":" + port + "/" + name + database.parameters());
+                hikariConfig.setUsername(systemVariableResolver.substituteEnvVars(database.user()));
+                hikariConfig.setPassword(systemVariableResolver.substituteEnvVars(database.password()));
+                hikariConfig.setMaximumPoolSize(4);
+            }
+        }
+
+        return hikariConfig;
+    }
+
+    private void loadDriver(Config.Database.Type type) {
+        if (!Boolean.TRUE.equals(config().ignoreExistingDriver()) && isDriverLoaded(type)) return;
+
+        String[] library = switch (type) {
+            case SQLITE -> new String[]{"org{}xerial", "sqlite-jdbc", BuildConfig.SQLITE_JDBC_VERSION};
+            case H2 -> new String[]{"com{}h2database", "h2", BuildConfig.H2_VERSION};
+            case MYSQL -> new String[]{"com{}mysql", "mysql-connector-j", BuildConfig.MYSQL_CONNECTOR_VERSION};
+            case MARIADB -> new String[]{"org{}mariadb{}jdbc", "mariadb-java-client", BuildConfig.MARIADB_JAVA_CLIENT_VERSION};
+            case POSTGRESQL -> new String[]{"org{}postgresql", "postgresql", BuildConfig.POSTGRESQL_VERSION};
+        };
+
+        libraryResolver.loadLibrary(Library.builder()
+                .groupId(library[0])
+                .artifactId(library[1])
+                .version(library[2])
+                .repository(BuildConfig.MAVEN_REPOSITORY)
+                .resolveTransitiveDependencies(true)
+                .build()
+        );
+    }
+
+    private boolean isDriverLoaded(Config.Database.Type type) {
+        try {
+            Class.forName(getDriverClass(type));
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private String getDriverClass(Config.Database.Type type) {
+        return switch (type) {
+            case SQLITE -> "org.sqlite.JDBC";
+            case H2 -> "org.h2.Driver";
+            case MYSQL -> "com.mysql.cj.jdbc.Driver";
+            case MARIADB -> "org.mariadb.jdbc.Driver";
+            case POSTGRESQL -> "org.postgresql.Driver";
+        };
+    }
+
+}
@@ -0,0 +1,256 @@
+package net.flectone.bot.data.repository;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import net.flectone.bot.config.Config;
+import net.flectone.bot.data.database.Database;
+import net.flectone.bot.model.mapping.MessageKey;
+import net.flectone.bot.model.mapping.MessageMapping;
+import net.flectone.bot.model.mapping.Platform;
+import net.flectone.bot.util.file.FileFacade;
+import org.apache.logging.log4j.Logger;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.PreparedBatch;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+@Singleton
+public class MessageMappingRepository {
+
+    private static final String TABLE = "message_mapping";
+    private static final long PRUNE_PERIOD = TimeUnit.HOURS.toMillis(1);
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "FlectoneBot-Mapping");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Queue<MessageMapping> pending = new ConcurrentLinkedQueue<>();
+    private final Map<MessageKey, List<MessageKey>> cache;
+
+    private final FileFacade fileFacade;
+    private final Database database;
+    private final Logger logger;
+
+    @Inject
+    public MessageMappingRepository(FileFacade fileFacade,
+                                    Database database,
+                                    Logger logger) {
+        this.fileFacade = fileFacade;
+        this.database = database;
+        this.logger = logger;
+
+        // access order makes it an lru, recent messages are the ones that get replies and edits
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MessageKey, List<MessageKey>> eldest) {
+                return size() > Math.max(1, config().cacheSize());
+            }
+        });
+    }
+
+    public Config.Mapping config() {
+        return fileFacade.config().mapping();
+    }
+
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(config().enable());
+    }
+
+    public void start() {
+        if (!isEnabled() || !database.isConnected()) return;
+
+        executor.execute(this::createTable);
+
+        long flushPeriod = Math.max(100, config().flushPeriod());
+        executor.scheduleWithFixedDelay(this::flush, flushPeriod, flushPeriod, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::prune, PRUNE_PERIOD, PRUNE_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    public void record(MessageKey source, MessageKey target) {
+        if (!isEnabled()) return;
+
+        link(source, target);
+        link(target, source);
+
+        if (database.isConnected()) {
+            pending.add(new MessageMapping(source, target, System.currentTimeMillis()));
+        }
+    }
+
+    // a fanned out message has one counterpart in every target chat
+    public CompletableFuture<List<MessageKey>> findCounterparts(MessageKey key, Platform platform) {
+        if (!isEnabled()) return CompletableFuture.completedFuture(List.of());
+
+        List<MessageKey> cached = findCached(key, platform);
+        if (!cached.isEmpty() || !database.isConnected()) return CompletableFuture.completedFuture(cached);
+
+        return CompletableFuture.supplyAsync(() -> {
+            List<MessageKey> counterparts = query(key, platform);
+            counterparts.forEach(value -> link(key, value));
+            return counterparts;
+        }, executor).exceptionally(throwable -> {
+            logger.warn("Failed to find message mapping", throwable);
+            return List.of();
+        });
+    }
+
+    public CompletableFuture<Optional<MessageKey>> findCounterpart(MessageKey key, Platform platform, String chat) {
+        return findCounterparts(key, platform).thenApply(counterparts -> counterparts.stream()
+                .filter(counterpart -> counterpart.chat().equals(chat))
+                .findFirst()
+        );
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+    }
+
+    private List<MessageKey> findCached(MessageKey key, Platform platform) {
+        synchronized (cache) {
+            List<MessageKey> linked = cache.get(key);
+            if (linked == null) return List.of();
+
+            return linked.stream()
+                    .filter(value -> value.platform() == platform)
+                    .toList();
+        }
+    }
+
+    private void link(MessageKey from, MessageKey to) {
+        synchronized (cache) {
+            List<MessageKey> linked = cache.computeIfAbsent(from, key -> new ArrayList<>(1));
+            if (!linked.contains(to)) {
+                linked.add(to);
+            }
+        }
+    }
+
+    private List<MessageKey> query(MessageKey key, Platform platform) {
+        Jdbi jdbi = database.getJdbi();
+        if (jdbi == null) return List.of();
+
+        String table = database.table(TABLE);
+
+        return jdbi.withHandle(handle -> handle.createQuery(
+                        "SELECT target_platform, target_chat, target_message FROM " + table +
+                                " WHERE source_platform = :platform AND source_chat = :chat AND source_message = :message AND target_platform = :target" +
+                                " UNION ALL " +
+                                "SELECT source_platform, source_chat, source_message FROM " + table +
+                                " WHERE target_platform = :platform AND target_chat = :chat AND target_message = :message AND source_platform = :target"
+                )
+                .bind("platform", key.platform().name())
+                .bind("chat", key.chat())
+                .bind("message", key.messageId())
+                .bind("target", platform.name())
+                .map((resultSet, context) -> new MessageKey(
+                        Platform.valueOf(resultSet.getString(1)),
+                        resultSet.getString(2),
+                        resultSet.getLong(3)
+                ))
+                .list()
+        );
+    }
+
+    // rows are written in batches, a busy chat would otherwise do one insert per relayed message
+    private void flush() {
+        if (pending.isEmpty()) return;
+
+        Jdbi jdbi = database.getJdbi();
+        if (jdbi == null) {
+            pending.clear();
+            return;
+        }
+
+        List<MessageMapping> mappings = new ArrayList<>();
+        MessageMapping mapping;
+        while ((mapping = pending.poll()) != null) {
+            mappings.add(mapping);
+        }
+
+        try {
+            jdbi.useHandle(handle -> {
+                PreparedBatch batch = handle.prepareBatch("INSERT INTO " + database.table(TABLE) +
+                        " (source_platform, source_chat, source_message, target_platform, target_chat, target_message, created_at)" +
+                        " VALUES (:source_platform, :source_chat, :source_message, :target_platform, :target_chat, :target_message, :created_at)"
+                );
+
+                for (MessageMapping value : mappings) {
+                    batch.bind("source_platform", value.source().platform().name())
+                            .bind("source_chat", value.source().chat())
+                            .bind("source_message", value.source().messageId())
+                            .bind("target_platform", value.target().platform().name())
+                            .bind("target_chat", value.target().chat())
+                            .bind("target_message", value.target().messageId())
+                            .bind("created_at", value.createdAt())
+                            .add();
+                }
+
+                batch.execute();
+            });
+        } catch (Exception e) {
+            logger.warn("Failed to save {} message mappings", mappings.size(), e);
+        }
+    }
+
+    private void prune() {
+        Jdbi jdbi = database.getJdbi();
+        if (jdbi == null) return;
+
+        long expiredBefore = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(config().ttl());
+
+        try {
+            jdbi.useHandle(handle -> handle.createUpdate("DELETE FROM " + database.table(TABLE) + " WHERE created_at < :created_at")
+                    .bind("created_at", expiredBefore)
+                    .execute()
+            );
+        } catch (Exception e) {
+            logger.warn("Failed to prune message mappings", e);
+        }
+    }
+
+    private void createTable() {
+        Jdbi jdbi = database.getJdbi();
+        if (jdbi == null) return;
+
+        String table = database.table(TABLE);
+
+        try {
+            jdbi.useHandle(handle -> handle.execute("CREATE TABLE IF NOT EXISTS " + table + " (" +
+                    "source_platform VARCHAR(16) NOT NULL, " +
+                    "source_chat VARCHAR(64) NOT NULL, " +
+                    "source_message BIGINT NOT NULL, " +
+                    "target_platform VARCHAR(16) NOT NULL, " +
+                    "target_chat VARCHAR(64) NOT NULL, " +
+                    "target_message BIGINT NOT NULL, " +
+                    "created_at BIGINT NOT NULL)"
+            ));
+        } catch (Exception e) {
+            logger.warn("Failed to create {} table", table, e);
+            return;
+        }
+
+        createIndex(jdbi, table + "_source", table, "source_platform, source_chat, source_message");
+        createIndex(jdbi, table + "_target", table, "target_platform, target_chat, target_message");
+        createIndex(jdbi, table + "_created", table, "created_at");
+    }
+
+    private void createIndex(Jdbi jdbi, String name, String table, String columns) {
+        try {
+            jdbi.useHandle(handle -> handle.execute("CREATE INDEX " + name + " ON " + table + " (" + columns + ")"));
+        } catch (Exception ignored) {
+            // index already exists, not every database supports IF NOT EXISTS for indexes
+        }
+    }
+
+}
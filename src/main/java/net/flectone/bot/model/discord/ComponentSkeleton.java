@@ -0,0 +1,21 @@
+package net.flectone.bot.model.discord;
+
+import discord4j.core.object.component.ActionRow;
+import discord4j.core.object.component.Button;
+import discord4j.discordjson.json.ComponentData;
+
+import java.util.List;
+
+public record ComponentSkeleton(
+        List<Button> buttons,
+        List<ActionRow> actionRows,
+        List<ComponentData> buttonData
+) {
+
+    public static final ComponentSkeleton EMPTY = new ComponentSkeleton(List.of(), List.of(), List.of());
+
+    public boolean isEmpty() {
+        return buttons.isEmpty();
+    }
+
+}
@@ -0,0 +1,83 @@
+package net.flectone.bot.model.discord;
+
+import discord4j.core.spec.EmbedCreateSpec;
+import discord4j.rest.util.Color;
+import org.jspecify.annotations.Nullable;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+public record EmbedSkeleton(
+        @Nullable Color color,
+        @Nullable String title,
+        @Nullable String url,
+        @Nullable Author author,
+        @Nullable String description,
+        @Nullable String thumbnail,
+        @Nullable String image,
+        boolean timestamp,
+        @Nullable Footer footer,
+        List<Field> fields
+) {
+
+    public record Author(String name, String url, String iconUrl) {}
+
+    public record Footer(String text, String iconUrl) {}
+
+    public record Field(String name, String value, boolean inline) {}
+
+    public EmbedCreateSpec render(UnaryOperator<String> discordString) {
+        EmbedCreateSpec.Builder embedBuilder = EmbedCreateSpec.builder();
+
+        if (color != null) {
+            embedBuilder.color(color);
+        }
+
+        if (title != null) {
+            embedBuilder.title(discordString.apply(title));
+        }
+
+        if (url != null) {
+            embedBuilder.url(discordString.apply(url));
+        }
+
+        if (author != null) {
+            embedBuilder.author(
+                    discordString.apply(author.name()),
+                    discordString.apply(author.url()),
+                    discordString.apply(author.iconUrl())
+            );
+        }
+
+        if (description != null) {
+            embedBuilder.description(discordString.apply(description));
+        }
+
+        if (thumbnail != null) {
+            embedBuilder.thumbnail(discordString.apply(thumbnail));
+        }
+
+        if (image != null) {
+            embedBuilder.image(discordString.apply(image));
+        }
+
+        if (timestamp) {
+            embedBuilder.timestamp(Instant.now());
+        }
+
+        if (footer != null) {
+            embedBuilder.footer(
+                    discordString.apply(footer.text()),
+                    discordString.apply(footer.iconUrl())
+            );
+        }
+
+        for (Field field : fields) {
+            embedBuilder.addField(discordString.apply(field.name()), discordString.apply(field.value()), field.inline());
+        }
+
+        return embedBuilder.build();
+    }
+
+}
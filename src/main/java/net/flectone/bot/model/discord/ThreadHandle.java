@@ -0,0 +1,6 @@
+package net.flectone.bot.model.discord;
+
+import discord4j.rest.entity.RestChannel;
+
+public record ThreadHandle(RestChannel channel, boolean archived) {
+}
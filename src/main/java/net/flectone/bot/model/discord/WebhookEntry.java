@@ -0,0 +1,4 @@
+package net.flectone.bot.model.discord;
+
+public record WebhookEntry(long id, String token) {
+}
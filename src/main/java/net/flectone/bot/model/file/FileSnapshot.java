@@ -0,0 +1,28 @@
+package net.flectone.bot.model.file;
+
+import discord4j.common.util.Snowflake;
+import net.flectone.bot.config.Integration;
+import net.flectone.bot.model.route.RouteTable;
+import org.jspecify.annotations.Nullable;
+
+// everything derived from one file pack, published together so readers never mix two reloads
+public record FileSnapshot(
+        FilePack files,
+        RouteTable routes,
+        @Nullable Snowflake guildId,
+        @Nullable Snowflake ticketRole
+) {
+
+    public static FileSnapshot of(FilePack files) {
+        Integration.Discord discord = files.integration().discord();
+        Integration.Discord.Ticket ticket = discord.ticket();
+
+        return new FileSnapshot(
+                files,
+                RouteTable.of(files.integration()),
+                discord.guildId() == null ? null : Snowflake.of(discord.guildId()),
+                ticket == null || ticket.permissionRole() == null ? null : Snowflake.of(ticket.permissionRole())
+        );
+    }
+
+}
@@ -0,0 +1,8 @@
+package net.flectone.bot.model.mapping;
+
+public record MessageKey(
+        Platform platform,
+        String chat,
+        long messageId
+) {
+}
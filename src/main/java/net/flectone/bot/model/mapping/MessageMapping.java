@@ -0,0 +1,8 @@
+package net.flectone.bot.model.mapping;
+
+public record MessageMapping(
+        MessageKey source,
+        MessageKey target,
+        long createdAt
+) {
+}
@@ -0,0 +1,8 @@
+package net.flectone.bot.model.mapping;
+
+public enum Platform {
+
+    DISCORD,
+    TELEGRAM
+
+}
@@ -0,0 +1,31 @@
+package net.flectone.bot.model.route;
+
+import discord4j.common.util.Snowflake;
+import org.jspecify.annotations.Nullable;
+
+public record DiscordTarget(
+        Snowflake channel,
+        @Nullable Snowflake thread
+) {
+
+    // "channel" or "channel_thread" for a forum thread
+    public static DiscordTarget parse(String target) {
+        int threadIndex = target.indexOf('_');
+        if (threadIndex == -1) return new DiscordTarget(Snowflake.of(target), null);
+
+        return new DiscordTarget(
+                Snowflake.of(target.substring(0, threadIndex)),
+                Snowflake.of(target.substring(threadIndex + 1))
+        );
+    }
+
+    public static DiscordTarget of(Snowflake channel) {
+        return new DiscordTarget(channel, null);
+    }
+
+    // a thread is a channel itself and has its own rate limit
+    public long route() {
+        return thread == null ? channel.asLong() : thread.asLong();
+    }
+
+}
@@ -0,0 +1,71 @@
+package net.flectone.bot.model.route;
+
+import net.flectone.bot.config.Integration;
+
+import java.util.*;
+
+// routes are parsed once per config load, relayed messages only do map lookups
+public record RouteTable(
+        Map<Long, List<TelegramTarget>> discordRoutes,
+        Map<Long, Map<Integer, List<DiscordTarget>>> telegramRoutes,
+        Set<Long> discordChannels
+) {
+
+    public static final RouteTable EMPTY = new RouteTable(Map.of(), Map.of(), Set.of());
+
+    public static RouteTable of(Integration integration) {
+        Map<Long, List<TelegramTarget>> discordRoutes = new HashMap<>();
+        Map<Long, Map<Integer, List<DiscordTarget>>> telegramRoutes = new HashMap<>();
+        Set<Long> discordChannels = new HashSet<>();
+
+        Map<Long, List<String>> discordConfig = integration.discord().channels();
+        if (discordConfig != null) {
+            discordConfig.forEach((channelId, targets) -> targets.stream()
+                    .map(TelegramTarget::parse)
+                    .distinct()
+                    .forEach(target -> discordRoutes.computeIfAbsent(channelId, id -> new ArrayList<>()).add(target))
+            );
+        }
+
+        Map<String, List<String>> telegramConfig = integration.telegram().channels();
+        if (telegramConfig != null) {
+            telegramConfig.forEach((source, targets) -> {
+                TelegramTarget telegramSource = TelegramTarget.parse(source);
+
+                targets.stream()
+                        .map(DiscordTarget::parse)
+                        .distinct()
+                        .forEach(target -> {
+                            telegramRoutes.computeIfAbsent(telegramSource.chatId(), id -> new HashMap<>())
+                                    .computeIfAbsent(telegramSource.threadId(), id -> new ArrayList<>())
+                                    .add(target);
+
+                            discordChannels.add(target.channel().asLong());
+                        });
+            });
+        }
+
+        discordRoutes.replaceAll((channelId, targets) -> List.copyOf(targets));
+        telegramRoutes.replaceAll((chatId, threads) -> {
+            Map<Integer, List<DiscordTarget>> copy = new HashMap<>();
+            threads.forEach((threadId, targets) -> copy.put(threadId, List.copyOf(targets)));
+            return Map.copyOf(copy);
+        });
+
+        discordChannels.addAll(discordRoutes.keySet());
+
+        return new RouteTable(Map.copyOf(discordRoutes), Map.copyOf(telegramRoutes), Set.copyOf(discordChannels));
+    }
+
+    public List<TelegramTarget> fromDiscord(long channelId) {
+        return discordRoutes.getOrDefault(channelId, List.of());
+    }
+
+    public List<DiscordTarget> fromTelegram(long chatId, int threadId) {
+        Map<Integer, List<DiscordTarget>> threads = telegramRoutes.get(chatId);
+        if (threads == null) return List.of();
+
+        return threads.getOrDefault(threadId, List.of());
+    }
+
+}
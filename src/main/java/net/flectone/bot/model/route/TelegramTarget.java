@@ -0,0 +1,24 @@
+package net.flectone.bot.model.route;
+
+public record TelegramTarget(
+        long chatId,
+        String chat,
+        int threadId
+) {
+
+    public static final int NO_THREAD = 0;
+
+    // "chat" or "chat_thread" for a forum topic
+    public static TelegramTarget parse(String target) {
+        int threadIndex = target.indexOf('_');
+        if (threadIndex == -1) return new TelegramTarget(Long.parseLong(target), target, NO_THREAD);
+
+        String chat = target.substring(0, threadIndex);
+        return new TelegramTarget(Long.parseLong(chat), chat, Integer.parseInt(target.substring(threadIndex + 1)));
+    }
+
+    public boolean hasThread() {
+        return threadId != NO_THREAD;
+    }
+
+}
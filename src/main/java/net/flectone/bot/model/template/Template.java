@@ -0,0 +1,98 @@
+package net.flectone.bot.model.template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public record Template(
+        String source,
+        Segment[] segments,
+        int literalLength,
+        int placeholderCount
+) {
+
+    private static final int PLACEHOLDER_CAPACITY = 16;
+
+    public sealed interface Segment permits Literal, Placeholder {}
+
+    public record Literal(String text) implements Segment {}
+
+    public record Placeholder(String key, String raw) implements Segment {}
+
+    public static Template compile(String source) {
+        List<Segment> segments = new ArrayList<>();
+
+        int literalLength = 0;
+        int placeholderCount = 0;
+        int literalStart = 0;
+        int index = 0;
+
+        while (index < source.length()) {
+            int open = source.indexOf('<', index);
+            if (open == -1) break;
+
+            int close = findClose(source, open);
+            if (close == -1) {
+                index = open + 1;
+                continue;
+            }
+
+            if (open > literalStart) {
+                segments.add(new Literal(source.substring(literalStart, open)));
+                literalLength += open - literalStart;
+            }
+
+            segments.add(new Placeholder(source.substring(open + 1, close), source.substring(open, close + 1)));
+            placeholderCount++;
+
+            index = close + 1;
+            literalStart = index;
+        }
+
+        if (literalStart < source.length()) {
+            segments.add(new Literal(source.substring(literalStart)));
+            literalLength += source.length() - literalStart;
+        }
+
+        return new Template(source, segments.toArray(Segment[]::new), literalLength, placeholderCount);
+    }
+
+    // placeholder is "<key>" where key is not empty and has no spaces or nested brackets
+    private static int findClose(String source, int open) {
+        for (int i = open + 1; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c == '>') return i == open + 1 ? -1 : i;
+            if (c == '<' || Character.isWhitespace(c)) return -1;
+        }
+
+        return -1;
+    }
+
+    public boolean hasPlaceholders() {
+        return placeholderCount > 0;
+    }
+
+    public String render(Map<String, String> placeholders) {
+        if (placeholderCount == 0) return source;
+
+        StringBuilder stringBuilder = new StringBuilder(literalLength + placeholderCount * PLACEHOLDER_CAPACITY);
+
+        for (Segment segment : segments) {
+            switch (segment) {
+                case Literal literal -> stringBuilder.append(literal.text());
+                case Placeholder placeholder -> {
+                    String value = placeholders.get(placeholder.key());
+                    if (value != null) {
+                        stringBuilder.append(value);
+                    } else if (!placeholders.containsKey(placeholder.key())) {
+                        // unknown placeholders are kept as is, like StringUtils.replaceEach did
+                        stringBuilder.append(placeholder.raw());
+                    }
+                }
+            }
+        }
+
+        return stringBuilder.toString();
+    }
+
+}
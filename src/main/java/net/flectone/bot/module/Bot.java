@@ -2,7 +2,8 @@ package net.flectone.bot.module;
 
 public interface Bot {
 
-    void startup();
+    // false when the platform is disabled, failures are thrown
+    boolean startup();
 
     void shutdown();
 
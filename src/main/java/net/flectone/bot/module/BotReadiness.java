@@ -0,0 +1,71 @@
+package net.flectone.bot.module;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import lombok.RequiredArgsConstructor;
+import net.flectone.bot.model.mapping.Platform;
+import org.apache.logging.log4j.Logger;
+import org.jspecify.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+// platforms start at the same time, a listener that relays to the other platform waits only for that one
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class BotReadiness {
+
+    private final Map<Platform, CompletableFuture<Void>> states = new ConcurrentHashMap<>();
+
+    private final Logger logger;
+
+    // starts the bot on the executor and completes its readiness with the result
+    public void start(ExecutorService executor, Platform platform, Bot bot) {
+        CompletableFuture.supplyAsync(bot::startup, executor).whenComplete((started, throwable) -> {
+            if (throwable != null) {
+                logger.error("Failed to start {}", platform, throwable);
+                complete(platform, throwable);
+                return;
+            }
+
+            if (started) {
+                complete(platform, null);
+            } else {
+                logger.info("{} is disabled, its token is empty", platform);
+                disable(platform);
+            }
+        });
+    }
+
+    public CompletableFuture<Void> get(Platform platform) {
+        return states.computeIfAbsent(platform, key -> new CompletableFuture<>());
+    }
+
+    public void complete(Platform platform, @Nullable Throwable throwable) {
+        if (throwable == null) {
+            get(platform).complete(null);
+        } else {
+            get(platform).completeExceptionally(throwable);
+        }
+    }
+
+    // a disabled platform never becomes ready, anything that waits for it is skipped
+    public void disable(Platform platform) {
+        get(platform).cancel(false);
+    }
+
+    // blocks until the platform has started, false if it is disabled or its startup failed
+    public boolean await(Platform platform) {
+        try {
+            get(platform).join();
+            return true;
+        } catch (CompletionException | CancellationException e) {
+            return false;
+        }
+    }
+
+}
@@ -3,33 +3,40 @@ package net.flectone.bot.module.discord;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.Singleton;
-import discord4j.common.util.Snowflake;
 import discord4j.core.DiscordClient;
 import discord4j.core.GatewayDiscordClient;
-import discord4j.core.object.entity.ApplicationInfo;
+import discord4j.core.event.domain.lifecycle.ReconnectEvent;
 import discord4j.core.object.presence.Activity;
 import discord4j.core.object.presence.ClientActivity;
 import discord4j.core.object.presence.ClientPresence;
 import discord4j.core.object.presence.Status;
-import discord4j.discordjson.json.WebhookData;
 import discord4j.rest.service.ApplicationService;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import net.flectone.bot.config.Integration;
+import net.flectone.bot.model.file.FilePack;
+import net.flectone.bot.model.mapping.Platform;
+import net.flectone.bot.model.route.RouteTable;
 import net.flectone.bot.module.Bot;
+import net.flectone.bot.module.BotReadiness;
+import net.flectone.bot.module.discord.cache.EmbedCache;
+import net.flectone.bot.module.discord.cache.ThreadCache;
 import net.flectone.bot.module.discord.command.BaseCommand;
-import net.flectone.bot.module.discord.listener.ButtonListener;
-import net.flectone.bot.module.discord.listener.ChatInputInteractionListener;
-import net.flectone.bot.module.discord.listener.MessageCreateListener;
-import net.flectone.bot.module.discord.listener.ModalSubmitInteractionListener;
+import net.flectone.bot.module.discord.listener.*;
 import net.flectone.bot.module.discord.register.CommandRegistry;
 import net.flectone.bot.module.discord.register.ListenerRegistry;
+import net.flectone.bot.module.discord.register.WebhookRegistry;
 import net.flectone.bot.module.discord.sender.MessageSender;
 import net.flectone.bot.processing.SystemVariableResolver;
 import net.flectone.bot.util.file.FileFacade;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.Logger;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @Singleton
 @RequiredArgsConstructor(onConstructor = @__(@Inject))
@@ -39,6 +46,7 @@ public class DiscordBot implements Bot {
     private final SystemVariableResolver systemVariableResolver;
     private final ListenerRegistry listenerRegistry;
     private final CommandRegistry commandRegistry;
+    private final BotReadiness botReadiness;
     private final Logger logger;
     private final Injector injector;
 
@@ -52,73 +60,121 @@ public class DiscordBot implements Bot {
     }
 
     @Override
-    public void startup() {
+    public boolean startup() {
         String token = systemVariableResolver.substituteEnvVars(config().token());
-        if (token.isEmpty()) return;
+        if (token.isEmpty()) return false;
 
-        discordClient = DiscordClient.create(token);
+        // a custom api url is for proxies and the load test stubs
+        String apiUrl = config().apiUrl();
+        discordClient = StringUtils.isEmpty(apiUrl)
+                ? DiscordClient.create(token)
+                : DiscordClient.builder(token).setDiscordBaseUrl(apiUrl).build();
 
-        gateway = discordClient.gateway().login().block();
-        if (gateway == null) return;
-
-        Integration.Discord.Presence presence = config().presence();
+        fileFacade.addUpdateListener(injector.getInstance(EmbedCache.class)::invalidate);
 
-        if (presence.enable()) {
-            Integration.Discord.Presence.Activity activity = presence.activity();
+        // stored webhooks are reused as is and commands are only sent when they changed since the last sync
+        WebhookRegistry webhookRegistry = injector.getInstance(WebhookRegistry.class);
+        webhookRegistry.load();
+        commandRegistry.load();
 
-            ClientActivity clientActivity = activity.enable()
-                    ? ClientActivity.of(Activity.Type.valueOf(activity.type()), activity.name(), activity.url())
-                    : null;
+        gateway = discordClient.gateway().login().block();
+        if (gateway == null) throw new IllegalStateException("Discord gateway login returned no client");
 
-            gateway.updatePresence(ClientPresence.of(Status.valueOf(presence.status()), clientActivity)).block();
-        }
+        applicationService = gateway.getRestClient().getApplicationService();
 
-        ApplicationInfo applicationInfo = gateway.getApplicationInfo().block();
-        if (applicationInfo == null) return;
+        // thread events missed while the gateway was disconnected would leave archived states stale
+        ThreadCache threadCache = injector.getInstance(ThreadCache.class);
+        gateway.on(ReconnectEvent.class)
+                .subscribe(event -> threadCache.invalidate(), e -> logger.warn("Failed to handle gateway reconnect", e));
 
-        applicationService = gateway.getRestClient().getApplicationService();
-        clientID = applicationInfo.getId().asLong();
+        // relayed messages go to telegram, so these listeners wait until it is ready
+        CompletableFuture<Void> telegramReady = botReadiness.get(Platform.TELEGRAM);
 
         listenerRegistry.register(gateway, injector.getInstance(ButtonListener.class));
         listenerRegistry.register(gateway, injector.getInstance(ChatInputInteractionListener.class));
-        listenerRegistry.register(gateway, injector.getInstance(MessageCreateListener.class));
+        listenerRegistry.register(gateway, injector.getInstance(MessageCreateListener.class), telegramReady);
+        listenerRegistry.register(gateway, injector.getInstance(MessageUpdateListener.class), telegramReady);
+        listenerRegistry.register(gateway, injector.getInstance(MessageDeleteListener.class), telegramReady);
         listenerRegistry.register(gateway, injector.getInstance(ModalSubmitInteractionListener.class));
+        listenerRegistry.register(gateway, injector.getInstance(ThreadChannelCreateListener.class));
+        listenerRegistry.register(gateway, injector.getInstance(ThreadChannelUpdateListener.class));
+        listenerRegistry.register(gateway, injector.getInstance(ThreadChannelDeleteListener.class));
+
+        // the requests do not depend on each other, so they are sent together instead of one round trip after another
+        Mono.when(
+                updatePresence(config().presence()),
+                gateway.getApplicationInfo().flatMap(applicationInfo -> {
+                    clientID = applicationInfo.getId().asLong();
+
+                    return Mono.when(
+                            registerCommands(),
+                            webhookRegistry.sync(fileFacade.snapshot().routes().discordChannels(), clientID)
+                    );
+                })
+        ).block();
+
+        fileFacade.addChangeListener(this::onReload);
+
+        return true;
+    }
+
+    // only the parts that differ from the previous files are applied again
+    private void onReload(FilePack previousFiles, FilePack currentFiles) {
+        if (previousFiles == null || gateway == null) return;
+
+        // bridged channels come from both integrations, so they are compared before the discord part
+        Set<Long> previousChannels = RouteTable.of(previousFiles.integration()).discordChannels();
+        Set<Long> currentChannels = fileFacade.snapshot().routes().discordChannels();
+        if (!previousChannels.equals(currentChannels)) {
+            injector.getInstance(WebhookRegistry.class)
+                    .sync(currentChannels, clientID)
+                    .subscribe(null, e -> logger.warn("Failed to sync webhooks", e));
+        }
 
-        Snowflake guildId = Snowflake.of(fileFacade.integration().discord().guildId());
+        Integration.Discord previous = previousFiles.integration().discord();
+        Integration.Discord current = currentFiles.integration().discord();
+        if (previous.equals(current)) return;
 
+        if (!Objects.equals(previous.token(), current.token())
+                || !Objects.equals(previous.apiUrl(), current.apiUrl())
+                || !Objects.equals(previous.guildId(), current.guildId())) {
+            logger.warn("Discord token, api url or guild was changed, restart is required to apply it");
+        }
+
+        if (!Objects.equals(previous.presence(), current.presence())) {
+            updatePresence(current.presence()).subscribe(null, e -> logger.warn("Failed to update presence", e));
+        }
+
+        if (!Objects.equals(previous.commands(), current.commands()) || !Objects.equals(previous.messages(), current.messages())) {
+            registerCommands().subscribe();
+        }
+    }
+
+    private Mono<Void> updatePresence(Integration.Discord.Presence presence) {
+        if (!presence.enable()) return Mono.empty();
+
+        Integration.Discord.Presence.Activity activity = presence.activity();
+
+        ClientActivity clientActivity = activity.enable()
+                ? ClientActivity.of(Activity.Type.valueOf(activity.type()), activity.name(), activity.url())
+                : null;
+
+        return gateway.updatePresence(ClientPresence.of(Status.valueOf(presence.status()), clientActivity));
+    }
+
+    private Mono<Void> registerCommands() {
         MessageSender messageSender = injector.getInstance(MessageSender.class);
 
-        fileFacade.integration().discord().commands().forEach(command -> {
-
-            BaseCommand discordCommand = BaseCommand.builder()
-                    .config(command)
-                    .messageSender(messageSender)
-                    .messages(fileFacade.integration().discord().messages())
-                    .build();
-
-            commandRegistry.registerGuild(applicationService, clientID, discordCommand, guildId);
-        });
-
-        config().channels().keySet()
-                .forEach(channelID -> {
-                    try {
-                        List<WebhookData> botWebhooks = discordClient.getWebhookService().getChannelWebhooks(channelID)
-                                .filter(data -> data.applicationId().isPresent() && data.applicationId().get().asLong() == clientID)
-                                .collectList()
-                                .block();
-
-                        if (botWebhooks != null && !botWebhooks.isEmpty()) {
-                            WebhookData kept = botWebhooks.getFirst();
-                            for (int i = 1; i < botWebhooks.size(); i++) {
-                                discordClient.getWebhookService().deleteWebhook(botWebhooks.get(i).id().asLong(), null).block();
-                            }
-
-                            messageSender.putWebhook(channelID, kept);
-                        }
-                    } catch (Exception e) {
-                        logger.warn(e);
-                    }
-                });
+        List<BaseCommand> commands = config().commands().stream()
+                .map(command -> BaseCommand.builder()
+                        .config(command)
+                        .messageSender(messageSender)
+                        .messages(config().messages())
+                        .build()
+                )
+                .toList();
+
+        return commandRegistry.syncGuild(applicationService, clientID, commands, fileFacade.snapshot().guildId());
     }
 
     @Override
@@ -132,6 +188,8 @@ public class DiscordBot implements Bot {
                     .block();
         }
 
+        listenerRegistry.shutdown();
+
         logger.info("Discord bot shutdown completed");
     }
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+package net.flectone.bot.module.discord.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import discord4j.core.object.component.ActionRow;
+import discord4j.core.object.component.Button;
+import discord4j.core.object.component.MessageComponent;
+import discord4j.discordjson.json.ComponentData;
+import lombok.RequiredArgsConstructor;
+import net.flectone.bot.config.Integration;
+import net.flectone.bot.model.discord.ComponentSkeleton;
+import net.flectone.bot.model.discord.EmbedSkeleton;
+import net.flectone.bot.module.discord.formatter.DiscordFormatter;
+import org.apache.commons.lang3.StringUtils;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class EmbedCache {
+
+    // weak keys use identity, so a reloaded config never hits a stale skeleton
+    private final Cache<Integration.Discord.Embed, EmbedSkeleton> embeds = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    private final Cache<Integration.WithEmbed, ComponentSkeleton> components = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    private final DiscordFormatter discordFormatter;
+
+    public EmbedSkeleton getEmbed(Integration.Discord.Embed embed) {
+        EmbedSkeleton skeleton = embeds.getIfPresent(embed);
+        if (skeleton == null) {
+            skeleton = createEmbed(embed);
+            embeds.put(embed, skeleton);
+        }
+
+        return skeleton;
+    }
+
+    public ComponentSkeleton getComponents(Integration.WithEmbed withEmbed) {
+        ComponentSkeleton skeleton = components.getIfPresent(withEmbed);
+        if (skeleton == null) {
+            skeleton = createComponents(discordFormatter.createButtons(withEmbed, ""));
+            components.put(withEmbed, skeleton);
+        }
+
+        return skeleton;
+    }
+
+    public void invalidate() {
+        embeds.invalidateAll();
+        components.invalidateAll();
+    }
+
+    public ComponentSkeleton createComponents(List<Button> buttons) {
+        if (buttons.isEmpty()) return ComponentSkeleton.EMPTY;
+
+        List<ComponentData> buttonData = buttons.stream()
+                .<ComponentData>map(btn -> ComponentData.builder()
+                        .type(MessageComponent.Type.BUTTON.getValue())
+                        .style(btn.getStyle().getValue())
+                        .customId(btn.getCustomId())
+                        .label(btn.getLabel().get())
+                        .build()
+                )
+                .toList();
+
+        return new ComponentSkeleton(List.copyOf(buttons), List.of(ActionRow.of(buttons)), buttonData);
+    }
+
+    private EmbedSkeleton createEmbed(Integration.Discord.Embed embed) {
+        discord4j.rest.util.Color color = null;
+        if (StringUtils.isNotEmpty(embed.color())) {
+            color = discord4j.rest.util.Color.of(Color.decode(embed.color()).getRGB());
+        }
+
+        EmbedSkeleton.Author author = null;
+        Integration.Discord.Embed.Author authorConfig = embed.author();
+        if (authorConfig != null && (StringUtils.isNotEmpty(authorConfig.name())
+                || StringUtils.isNotEmpty(authorConfig.url())
+                || StringUtils.isNotEmpty(authorConfig.iconUrl()))) {
+            author = new EmbedSkeleton.Author(authorConfig.name(), authorConfig.url(), authorConfig.iconUrl());
+        }
+
+        EmbedSkeleton.Footer footer = null;
+        Integration.Discord.Embed.Footer footerConfig = embed.footer();
+        if (footerConfig != null && (StringUtils.isNotEmpty(footerConfig.text()) || StringUtils.isNotEmpty(footerConfig.iconUrl()))) {
+            footer = new EmbedSkeleton.Footer(footerConfig.text(), footerConfig.iconUrl());
+        }
+
+        List<EmbedSkeleton.Field> fields = new ArrayList<>();
+        if (embed.fields() != null) {
+            for (Integration.Discord.Embed.Field field : embed.fields()) {
+                if (StringUtils.isEmpty(field.name()) || StringUtils.isEmpty(field.value())) continue;
+
+                fields.add(new EmbedSkeleton.Field(field.name(), field.value(), Boolean.TRUE.equals(field.inline())));
+            }
+        }
+
+        return new EmbedSkeleton(
+                color,
+                StringUtils.defaultIfEmpty(embed.title(), null),
+                StringUtils.defaultIfEmpty(embed.url(), null),
+                author,
+                StringUtils.defaultIfEmpty(embed.description(), null),
+                StringUtils.defaultIfEmpty(embed.thumbnail(), null),
+                StringUtils.defaultIfEmpty(embed.image(), null),
+                Boolean.TRUE.equals(embed.timestamp()),
+                footer,
+                List.copyOf(fields)
+        );
+    }
+
+}
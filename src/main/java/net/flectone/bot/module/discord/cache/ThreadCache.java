@@ -0,0 +1,76 @@
+package net.flectone.bot.module.discord.cache;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import discord4j.common.util.Snowflake;
+import discord4j.core.object.entity.channel.ThreadChannel;
+import lombok.RequiredArgsConstructor;
+import net.flectone.bot.model.discord.ThreadHandle;
+import net.flectone.bot.module.discord.DiscordBot;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class ThreadCache {
+
+    private final Map<Long, ThreadHandle> threads = new ConcurrentHashMap<>();
+    private final Map<Long, Long> parents = new ConcurrentHashMap<>();
+
+    private final Provider<DiscordBot> discordBotProvider;
+
+    // empty if the thread is archived, an unknown thread is looked up first, so archived ones stay skipped after a restart
+    public Mono<ThreadHandle> get(Snowflake threadId) {
+        ThreadHandle threadHandle = threads.get(threadId.asLong());
+        Mono<ThreadHandle> handle = threadHandle != null
+                ? Mono.just(threadHandle)
+                : discordBotProvider.get().getGateway().getChannelById(threadId)
+                        .ofType(ThreadChannel.class)
+                        .map(this::put);
+
+        return handle.filter(found -> !found.archived());
+    }
+
+    public void update(ThreadChannel thread) {
+        put(thread);
+    }
+
+    public void remove(Snowflake threadId) {
+        threads.remove(threadId.asLong());
+        parents.remove(threadId.asLong());
+    }
+
+    // true if the channel is one of the channels or a thread of one of them
+    public Mono<Boolean> belongsTo(Snowflake channelId, Set<Long> channels) {
+        if (channels.contains(channelId.asLong())) return Mono.just(true);
+
+        Long parentId = parents.get(channelId.asLong());
+        if (parentId != null) return Mono.just(channels.contains(parentId));
+
+        // the gateway keeps channels in its store, so this is a rest call only for a channel it has not seen
+        return discordBotProvider.get().getGateway().getChannelById(channelId)
+                .ofType(ThreadChannel.class)
+                .doOnNext(this::put)
+                .flatMap(thread -> Mono.justOrEmpty(thread.getParentId()))
+                .map(parent -> channels.contains(parent.asLong()))
+                .defaultIfEmpty(false);
+    }
+
+    public void invalidate() {
+        threads.clear();
+    }
+
+    private ThreadHandle put(ThreadChannel thread) {
+        ThreadHandle threadHandle = new ThreadHandle(discordBotProvider.get().getDiscordClient().getChannelById(thread.getId()), thread.isArchived());
+
+        threads.put(thread.getId().asLong(), threadHandle);
+        thread.getParentId().ifPresent(parentId -> parents.put(thread.getId().asLong(), parentId.asLong()));
+
+        return threadHandle;
+    }
+
+}
@@ -2,17 +2,23 @@ package net.flectone.bot.module.discord.command;
 
 import discord4j.common.util.Snowflake;
 import discord4j.core.event.domain.interaction.ChatInputInteractionEvent;
+import discord4j.core.object.command.ApplicationCommandInteractionOption;
 import discord4j.core.object.command.ApplicationCommandOption;
+import discord4j.core.object.entity.Member;
 import discord4j.discordjson.json.ApplicationCommandOptionData;
 import discord4j.discordjson.json.ApplicationCommandRequest;
 import discord4j.discordjson.json.ImmutableApplicationCommandOptionData;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.experimental.SuperBuilder;
 import net.flectone.bot.config.Integration;
 import net.flectone.bot.module.discord.sender.MessageSender;
+import org.jspecify.annotations.Nullable;
 import reactor.core.publisher.Mono;
 
-import java.util.Optional;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 
 @Getter
 @SuperBuilder
@@ -22,39 +28,62 @@ public class BaseCommand implements Command {
     protected final MessageSender messageSender;
     protected final Integration.Discord.Messages messages;
 
-    @Override
-    public ApplicationCommandRequest getRequest() {
-        return ApplicationCommandRequest.builder()
-                .name(config.name())
-                .description(config.description())
-                .options(config.options().stream().map(this::buildOption).toList())
-                .build();
-    }
+    // everything that does not depend on the interaction is resolved once per command, not on every use
+    @Getter(lazy = true)
+    private final ApplicationCommandRequest request = buildRequest();
+
+    @Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final Map<String, SubCommand> subCommands = indexSubCommands();
+
+    @Getter(lazy = true)
+    private final @Nullable Snowflake permissionRole = parseRole(config);
 
     @Override
     public Mono<Void> handle(ChatInputInteractionEvent event) {
-        if (!hasPermission(event)) {
+        Set<Snowflake> roleIds = getRoleIds(event);
+        if (roleIds == null || !hasRole(roleIds, getPermissionRole())) {
             return event.reply(messages.noPermission()).withEphemeral(true).then();
         }
 
-        Optional<Integration.Discord.Command.Option> subCommand = event.getOptions().stream()
-                .filter(opt -> opt.getType() == ApplicationCommandOption.Type.SUB_COMMAND)
-                .findFirst()
-                .flatMap(opt -> config.options().stream()
-                        .filter(o -> o.name().equals(opt.getName()))
-                        .findFirst()
-                );
+        SubCommand subCommand = null;
+        for (ApplicationCommandInteractionOption option : event.getOptions()) {
+            if (option.getType() == ApplicationCommandOption.Type.SUB_COMMAND) {
+                subCommand = getSubCommands().get(option.getName());
+                break;
+            }
+        }
 
-        if (subCommand.isEmpty()) return event.reply(messages.unknownCommand()).withEphemeral(true).then();
+        if (subCommand == null) return event.reply(messages.unknownCommand()).withEphemeral(true).then();
+
+        if (!hasRole(roleIds, subCommand.permissionRole())) {
+            return event.reply(messages.noPermission()).withEphemeral(true).then();
+        }
 
         return messageSender.sendMessage(
                 event,
-                subCommand.get(),
+                subCommand.option(),
                 config.name(),
                 config.privateReply()
         );
     }
 
+    private ApplicationCommandRequest buildRequest() {
+        return ApplicationCommandRequest.builder()
+                .name(config.name())
+                .description(config.description())
+                .options(config.options().stream().map(this::buildOption).toList())
+                .build();
+    }
+
+    private Map<String, SubCommand> indexSubCommands() {
+        Map<String, SubCommand> index = new HashMap<>();
+
+        // the first option with a name wins, as it did when the options were searched in order
+        config.options().forEach(option -> index.putIfAbsent(option.name(), new SubCommand(option, parseRole(option))));
+
+        return Map.copyOf(index);
+    }
+
     private ApplicationCommandOptionData buildOption(Integration.Discord.Command.Option option) {
         ImmutableApplicationCommandOptionData.Builder builder = ApplicationCommandOptionData.builder()
                 .type(option.type().getValue())
@@ -69,12 +98,20 @@ public class BaseCommand implements Command {
         return builder.build();
     }
 
-    private boolean hasPermission(ChatInputInteractionEvent event) {
+    private @Nullable Set<Snowflake> getRoleIds(ChatInputInteractionEvent event) {
         return event.getInteraction().getMember()
-                .map(member -> {
-                    if (config.permissionRole() == null) return true;
-                    return member.getRoleIds().contains(Snowflake.of(config.permissionRole()));
-                })
-                .orElse(false);
+                .map(Member::getRoleIds)
+                .orElse(null);
+    }
+
+    private boolean hasRole(Set<Snowflake> roleIds, @Nullable Snowflake role) {
+        return role == null || roleIds.contains(role);
     }
-}
\ No newline at end of file
+
+    private static @Nullable Snowflake parseRole(Integration.Discord.WithPermission withPermission) {
+        return withPermission.permissionRole() == null ? null : Snowflake.of(withPermission.permissionRole());
+    }
+
+    private record SubCommand(Integration.Discord.Command.Option option, @Nullable Snowflake permissionRole) {}
+
+}
@@ -8,7 +8,7 @@ import discord4j.core.object.component.Button;
 import discord4j.core.object.component.TextInput;
 import lombok.RequiredArgsConstructor;
 import net.flectone.bot.config.Integration;
-import org.apache.commons.lang3.StringUtils;
+import net.flectone.bot.processing.TemplateCompiler;
 
 import java.util.*;
 
@@ -16,6 +16,8 @@ import java.util.*;
 @RequiredArgsConstructor(onConstructor = @__(@Inject))
 public class DiscordFormatter {
 
+    private final TemplateCompiler templateCompiler;
+
     public List<Button> createButtons(Integration.WithEmbed withEmbed, String infoId) {
         if (withEmbed.buttons() == null) return Collections.emptyList();
 
@@ -67,12 +69,6 @@ public class DiscordFormatter {
     }
 
     public String formatMessage(String message, Map<String, String> placeholders) {
-        String[] searchList = placeholders.keySet().stream()
-                .map(key -> "<" + key + ">")
-                .toArray(String[]::new);
-
-        String[] replacementList = placeholders.values().toArray(new String[0]);
-
-        return StringUtils.replaceEach(message, searchList, replacementList);
+        return templateCompiler.format(message, placeholders);
     }
 }
\ No newline at end of file
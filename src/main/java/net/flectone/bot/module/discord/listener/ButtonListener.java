@@ -42,11 +42,11 @@ public class ButtonListener implements EventListener<ButtonInteractionEvent> {
         String creatorIdStr = customId.substring("close_button_".length());
         Snowflake creatorId = Snowflake.of(creatorIdStr);
         Snowflake userId = event.getInteraction().getUser().getId();
-        Snowflake adminRole = Snowflake.of(fileFacade.integration().discord().ticket().permissionRole());
+        Snowflake adminRole = fileFacade.snapshot().ticketRole();
 
         boolean isCreator = userId.equals(creatorId);
         boolean hasRole = event.getInteraction().getMember()
-                .map(member -> member.getRoleIds().contains(adminRole))
+                .map(member -> adminRole != null && member.getRoleIds().contains(adminRole))
                 .orElse(false);
 
         if (!isCreator && !hasRole) {
@@ -1,7 +1,10 @@
 package net.flectone.bot.module.discord.listener;
 
 import discord4j.core.event.domain.Event;
+import discord4j.core.event.domain.interaction.InteractionCreateEvent;
+import org.jspecify.annotations.Nullable;
 import reactor.core.publisher.Mono;
+import reactor.util.concurrent.Queues;
 
 public interface EventListener<T extends Event> {
 
@@ -9,4 +12,15 @@ public interface EventListener<T extends Event> {
 
     Mono<Void> handle(T event);
 
+    // events of one listener handled at the same time, the rest wait in the listener's own queue
+    // interactions must be answered within 3 seconds, so they never wait behind the limit
+    default int getConcurrency() {
+        return InteractionCreateEvent.class.isAssignableFrom(getEventType()) ? Integer.MAX_VALUE : Queues.SMALL_BUFFER_SIZE;
+    }
+
+    // events with the same key are handled one after another, null means no ordering
+    default @Nullable Object getOrderKey(T event) {
+        return null;
+    }
+
 }
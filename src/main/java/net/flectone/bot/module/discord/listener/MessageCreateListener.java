@@ -7,21 +7,43 @@ import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.*;
 import lombok.RequiredArgsConstructor;
 import net.flectone.bot.config.Integration;
+import net.flectone.bot.data.repository.MessageMappingRepository;
+import net.flectone.bot.model.mapping.MessageKey;
+import net.flectone.bot.model.mapping.Platform;
+import net.flectone.bot.model.route.TelegramTarget;
 import net.flectone.bot.module.telegram.sender.MessageSender;
+import net.flectone.bot.processing.TemplateCompiler;
 import net.flectone.bot.util.file.FileFacade;
+import net.flectone.bot.util.metrics.RelayMetrics;
+import net.flectone.bot.util.trace.RelayTrace;
+import net.flectone.bot.util.trace.Tracer;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.Logger;
+import org.jspecify.annotations.Nullable;
 import reactor.core.publisher.Mono;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
 
 @Singleton
 @RequiredArgsConstructor(onConstructor = @__(@Inject))
 public class MessageCreateListener implements EventListener<MessageCreateEvent> {
 
+    private static final String UNKNOWN_NAME = "Unknown";
+
+    private final Map<Long, String> webhookNames = new ConcurrentHashMap<>();
+
     private final FileFacade fileFacade;
     private final MessageSender telegramMessageSender;
+    private final TemplateCompiler templateCompiler;
+    private final MessageMappingRepository messageMappingRepository;
+    private final RelayMetrics relayMetrics;
+    private final Tracer tracer;
     private final Logger logger;
 
     public Integration.Discord config() {
@@ -33,6 +55,12 @@ public class MessageCreateListener implements EventListener<MessageCreateEvent>
         return MessageCreateEvent.class;
     }
 
+    // messages of one channel are relayed in the order they were sent
+    @Override
+    public Object getOrderKey(MessageCreateEvent event) {
+        return event.getMessage().getChannelId().asLong();
+    }
+
     @Override
     public Mono<Void> handle(MessageCreateEvent event) {
         Message discordMessage = event.getMessage();
@@ -43,59 +71,128 @@ public class MessageCreateListener implements EventListener<MessageCreateEvent>
         Member member = user.get();
         if (member.isBot()) return Mono.empty();
 
-        Long discordChannelId = discordMessage.getChannelId().asLong();
-        logger.info("DISCORD chat_id={}, author_id={}, message_id={}", discordChannelId, member.getId(), discordMessage.getId());
+        relayMetrics.received(Platform.DISCORD);
+
+        long discordChannelId = discordMessage.getChannelId().asLong();
+        RelayTrace trace = tracer.start(Platform.DISCORD, String.valueOf(discordChannelId));
+
+        List<TelegramTarget> targets = fileFacade.snapshot().routes().fromDiscord(discordChannelId);
+        relayMetrics.routed(Platform.DISCORD, trace.getReceivedAt(), targets.size());
+        if (targets.isEmpty()) return Mono.empty();
+
+        trace.mark(RelayTrace.Stage.ROUTE);
+
+        // unbridged channels are not logged, busy channels can be sampled
+        if (tracer.isLogged(trace)) {
+            logger.info("DISCORD trace={}, chat_id={}, author_id={}, message_id={}", trace.getIdString(), discordChannelId, member.getId(), discordMessage.getId());
+        }
+
+        MessageKey source = new MessageKey(Platform.DISCORD, discordMessage.getChannelId().asString(), discordMessage.getId().asLong());
+
+        return collectPlaceholders(discordMessage, member)
+                .flatMap(relay -> fanOut(relay, source, targets, trace));
+    }
+
+    // every target has its own queue, so the sends run in parallel and keep their own order
+    private Mono<Void> fanOut(Relay relay, MessageKey source, List<TelegramTarget> targets, RelayTrace trace) {
+        return Mono.defer(() -> {
+            trace.mark(RelayTrace.Stage.RENDER);
+            trace.expect(targets.size());
 
-        String telegramChannelId = config().channels().get(discordChannelId);
-        if (telegramChannelId == null) return Mono.empty();
+            targets.forEach(target -> {
+                long dispatchedAt = System.nanoTime();
+
+                telegramMessageSender.sendMessage(target, relayMetrics.rendering(Platform.DISCORD, relay.formatter(target.chat())), relay.replyTo(target.chat()), trace)
+                        .whenComplete((sentMessage, throwable) -> {
+                            relayMetrics.acknowledged(Platform.DISCORD, trace.getReceivedAt(), dispatchedAt, throwable == null);
+                            tracer.acknowledge(trace, throwable == null);
+                            if (sentMessage == null) return;
+
+                            messageMappingRepository.record(source, new MessageKey(Platform.TELEGRAM, sentMessage.getChatId().toString(), sentMessage.getMessageId()));
+                        });
+            });
+
+            return Mono.empty();
+        });
+    }
 
+    Mono<Relay> collectPlaceholders(Message discordMessage, Member member) {
         String globalName = member.getGlobalName().orElse("");
         String nickname = member.getNickname().orElse("");
         String displayName = member.getDisplayName();
         String userName = member.getUsername();
-        String formatReply = retrieveReply(discordMessage)
-                .map(this::formatReplyForTelegram)
-                .orElse("");
-
-        telegramMessageSender.sendMessage(telegramChannelId, s -> StringUtils.replaceEach(
-                s,
-                new String[]{"<name>", "<global_name>", "<nickname>", "<display_name>", "<user_name>", "<message>", "<reply>"},
-                new String[]{globalName, globalName, nickname, displayName, userName, StringUtils.defaultString(getMessageContent(discordMessage)), formatReply}
-        ));
+        String content = StringUtils.defaultString(getMessageContent(discordMessage));
+
+        return Mono.zip(
+                findReplyTargets(discordMessage),
+                retrieveReply(discordMessage)
+                        .map(this::formatReplyForTelegram)
+                        .defaultIfEmpty("")
+        ).map(reply -> {
+            Map<String, String> placeholders = new HashMap<>();
+            placeholders.put("name", globalName);
+            placeholders.put("global_name", globalName);
+            placeholders.put("nickname", nickname);
+            placeholders.put("display_name", displayName);
+            placeholders.put("user_name", userName);
+            placeholders.put("message", content);
+
+            Map<String, String> nativeReplyPlaceholders = new HashMap<>(placeholders);
+            nativeReplyPlaceholders.put("reply", "");
+            placeholders.put("reply", reply.getT2());
+
+            return new Relay(
+                    templateCompiler.formatter(placeholders),
+                    templateCompiler.formatter(nativeReplyPlaceholders),
+                    reply.getT1()
+            );
+        });
+    }
 
-        return Mono.empty();
+    private Mono<List<MessageKey>> findReplyTargets(Message message) {
+        Optional<Message> referencedMessage = message.getReferencedMessage();
+        if (referencedMessage.isEmpty()) return Mono.just(List.of());
+
+        MessageKey key = new MessageKey(Platform.DISCORD, message.getChannelId().asString(), referencedMessage.get().getId().asLong());
+        return Mono.fromFuture(messageMappingRepository.findCounterparts(key, Platform.TELEGRAM));
     }
 
-    private Optional<Pair<String, String>> retrieveReply(Message message) {
+    private Mono<Pair<String, String>> retrieveReply(Message message) {
         Optional<Message> optionalReferencedMessage = message.getReferencedMessage();
-        if (optionalReferencedMessage.isEmpty()) return Optional.empty();
+        if (optionalReferencedMessage.isEmpty()) return Mono.empty();
 
         Message referencedMessage = optionalReferencedMessage.get();
 
         String content = getMessageContent(referencedMessage);
 
         Optional<User> author = referencedMessage.getAuthor();
-        if (author.isPresent()) return Optional.of(Pair.of(author.get().getUsername(), content));
+        if (author.isPresent()) return Mono.just(Pair.of(author.get().getUsername(), content));
 
         Optional<Snowflake> webhookId = referencedMessage.getWebhookId();
-        if (webhookId.isPresent()) {
-            Webhook webhook = referencedMessage.getWebhook().block();
-            if (webhook != null) {
-                return Optional.of(Pair.of(webhook.getName().orElse("Unknown"), content));
-            }
-        }
+        if (webhookId.isEmpty()) return Mono.just(Pair.of(UNKNOWN_NAME, content));
+
+        // our webhooks set the sender name on every message, so it comes with the message itself
+        String webhookUserName = referencedMessage.getData().author().username();
+        if (StringUtils.isNotEmpty(webhookUserName)) return Mono.just(Pair.of(webhookUserName, content));
 
-        return Optional.of(Pair.of("Unknown", content));
+        String webhookName = webhookNames.get(webhookId.get().asLong());
+        if (webhookName != null) return Mono.just(Pair.of(webhookName, content));
+
+        return referencedMessage.getWebhook()
+                .map(webhook -> webhook.getName().orElse(UNKNOWN_NAME))
+                .doOnNext(name -> webhookNames.put(webhookId.get().asLong(), name))
+                .onErrorResume(e -> Mono.empty())
+                .defaultIfEmpty(UNKNOWN_NAME)
+                .map(name -> Pair.of(name, content));
     }
 
     private String formatReplyForTelegram(Pair<String, String> reply) {
         if (reply == null) return "";
 
-        return StringUtils.replaceEach(
-                fileFacade.integration().telegram().formatReply(),
-                new String[]{"<reply_user>", "<reply_message>"},
-                new String[]{StringUtils.defaultString(reply.getLeft()), StringUtils.defaultString(reply.getRight())}
-        );
+        return templateCompiler.format(fileFacade.integration().telegram().formatReply(), Map.of(
+                "reply_user", StringUtils.defaultString(reply.getLeft()),
+                "reply_message", StringUtils.defaultString(reply.getRight())
+        ));
     }
 
     private String getMessageContent(Message message) {
@@ -111,4 +208,21 @@ public class MessageCreateListener implements EventListener<MessageCreateEvent>
         return content;
     }
 
+    // one rendering per reply kind, the reply is native in every chat that has the relayed counterpart
+    record Relay(UnaryOperator<String> textReplyFormatter, UnaryOperator<String> nativeReplyFormatter, List<MessageKey> replyTargets) {
+
+        UnaryOperator<String> formatter(String chat) {
+            return replyTo(chat) != null ? nativeReplyFormatter : textReplyFormatter;
+        }
+
+        @Nullable Integer replyTo(String chat) {
+            for (MessageKey replyTarget : replyTargets) {
+                if (replyTarget.chat().equals(chat)) return Math.toIntExact(replyTarget.messageId());
+            }
+
+            return null;
+        }
+
+    }
+
 }
@@ -0,0 +1,93 @@
+package net.flectone.bot.module.discord.listener;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import discord4j.core.event.domain.message.MessageDeleteEvent;
+import lombok.RequiredArgsConstructor;
+import net.flectone.bot.config.Integration;
+import net.flectone.bot.data.repository.MessageMappingRepository;
+import net.flectone.bot.model.mapping.MessageKey;
+import net.flectone.bot.model.mapping.Platform;
+import net.flectone.bot.module.discord.cache.ThreadCache;
+import net.flectone.bot.module.telegram.sender.MessageSender;
+import net.flectone.bot.util.file.FileFacade;
+import org.apache.logging.log4j.Logger;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class MessageDeleteListener implements EventListener<MessageDeleteEvent> {
+
+    // copies deleted by the bot, their own delete events are skipped
+    private final Cache<MessageKey, Boolean> deleting = CacheBuilder.newBuilder()
+            .expireAfterWrite(1, TimeUnit.MINUTES)
+            .build();
+
+    private final FileFacade fileFacade;
+    private final MessageUpdateListener messageUpdateListener;
+    private final MessageSender telegramMessageSender;
+    private final net.flectone.bot.module.discord.sender.MessageSender discordMessageSender;
+    private final MessageMappingRepository messageMappingRepository;
+    private final ThreadCache threadCache;
+    private final Logger logger;
+
+    public Integration.Discord config() {
+        return fileFacade.integration().discord();
+    }
+
+    @Override
+    public Class<MessageDeleteEvent> getEventType() {
+        return MessageDeleteEvent.class;
+    }
+
+    @Override
+    public Object getOrderKey(MessageDeleteEvent event) {
+        return event.getChannelId().asLong();
+    }
+
+    @Override
+    public Mono<Void> handle(MessageDeleteEvent event) {
+        // relayed telegram messages are in target channels and their threads too
+        return threadCache.belongsTo(event.getChannelId(), fileFacade.snapshot().routes().discordChannels())
+                .filter(Boolean::booleanValue)
+                .flatMap(routed -> deleteMessages(event));
+    }
+
+    private Mono<Void> deleteMessages(MessageDeleteEvent event) {
+        MessageKey source = new MessageKey(Platform.DISCORD, event.getChannelId().asString(), event.getMessageId().asLong());
+        messageUpdateListener.cancelEdit(source);
+
+        // the bot deleted this copy itself, the rest of its message is already being deleted
+        if (deleting.asMap().remove(source) != null) return Mono.empty();
+
+        // works both ways, a relayed telegram message deleted by a moderator is removed from telegram
+        // and from the other channels it was fanned out to
+        return Mono.fromFuture(messageMappingRepository.findCounterparts(source, Platform.TELEGRAM))
+                .flatMapMany(Flux::fromIterable)
+                .flatMap(telegramMessage -> Mono.when(
+                        Mono.fromFuture(telegramMessageSender.deleteMessage(telegramMessage.chat(), Math.toIntExact(telegramMessage.messageId()))),
+                        Mono.fromFuture(messageMappingRepository.findCounterparts(telegramMessage, Platform.DISCORD))
+                                .flatMapMany(Flux::fromIterable)
+                                .filter(copy -> !copy.equals(source))
+                                .flatMap(this::deleteCopy)
+                ))
+                .then();
+    }
+
+    private Mono<Void> deleteCopy(MessageKey copy) {
+        deleting.put(copy, Boolean.TRUE);
+
+        return discordMessageSender.deleteMessage(Long.parseLong(copy.chat()), copy.messageId())
+                .onErrorResume(e -> {
+                    deleting.invalidate(copy);
+                    logger.warn("Failed to delete relayed discord message", e);
+                    return Mono.empty();
+                });
+    }
+
+}
@@ -0,0 +1,91 @@
+package net.flectone.bot.module.discord.listener;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import discord4j.core.event.domain.message.MessageUpdateEvent;
+import discord4j.core.object.entity.Message;
+import lombok.RequiredArgsConstructor;
+import net.flectone.bot.config.Integration;
+import net.flectone.bot.data.repository.MessageMappingRepository;
+import net.flectone.bot.model.mapping.MessageKey;
+import net.flectone.bot.model.mapping.Platform;
+import net.flectone.bot.module.discord.cache.ThreadCache;
+import net.flectone.bot.module.telegram.sender.MessageSender;
+import net.flectone.bot.util.executor.Debouncer;
+import net.flectone.bot.util.file.FileFacade;
+import org.apache.logging.log4j.Logger;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class MessageUpdateListener implements EventListener<MessageUpdateEvent> {
+
+    private final Debouncer editDebouncer = new Debouncer("FlectoneBot-Discord-Edit");
+
+    private final FileFacade fileFacade;
+    private final MessageCreateListener messageCreateListener;
+    private final MessageSender telegramMessageSender;
+    private final MessageMappingRepository messageMappingRepository;
+    private final ThreadCache threadCache;
+    private final Logger logger;
+
+    public Integration.Discord config() {
+        return fileFacade.integration().discord();
+    }
+
+    @Override
+    public Class<MessageUpdateEvent> getEventType() {
+        return MessageUpdateEvent.class;
+    }
+
+    // one channel at a time, so edits reach telegram in the order they were made
+    @Override
+    public Object getOrderKey(MessageUpdateEvent event) {
+        return event.getChannelId().asLong();
+    }
+
+    @Override
+    public Mono<Void> handle(MessageUpdateEvent event) {
+        if (!event.isContentChanged()) return Mono.empty();
+
+        // relayed telegram messages are in target channels and their threads too
+        return threadCache.belongsTo(event.getChannelId(), fileFacade.snapshot().routes().discordChannels())
+                .filter(Boolean::booleanValue)
+                .doOnNext(routed -> debounceEdit(event))
+                .then();
+    }
+
+    private void debounceEdit(MessageUpdateEvent event) {
+        MessageKey source = new MessageKey(Platform.DISCORD, event.getChannelId().asString(), event.getMessageId().asLong());
+        long editDelay = fileFacade.config().mapping().editDelay();
+
+        // only the last of several quick edits reaches telegram
+        editDebouncer.debounce(source, editDelay, () -> messageMappingRepository.findCounterparts(source, Platform.TELEGRAM)
+                .thenAccept(telegramMessages -> {
+                    if (!telegramMessages.isEmpty()) editMessages(event, telegramMessages);
+                })
+        );
+    }
+
+    public void cancelEdit(MessageKey source) {
+        editDebouncer.cancel(source);
+    }
+
+    private void editMessages(MessageUpdateEvent event, List<MessageKey> telegramMessages) {
+        event.getMessage()
+                // relayed telegram messages are edited by the bot itself
+                .filter(message -> message.getWebhookId().isEmpty())
+                .flatMap(message -> message.getAuthorAsMember()
+                        .filter(member -> !member.isBot())
+                        .flatMap(member -> messageCreateListener.collectPlaceholders(message, member))
+                )
+                .subscribe(
+                        relay -> telegramMessages.forEach(telegramMessage -> telegramMessageSender.editMessage(telegramMessage.chat(),
+                                Math.toIntExact(telegramMessage.messageId()), relay.formatter(telegramMessage.chat()))),
+                        throwable -> logger.warn("Failed to edit telegram message", throwable)
+                );
+    }
+
+}
@@ -0,0 +1,27 @@
+package net.flectone.bot.module.discord.listener;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import discord4j.core.event.domain.thread.ThreadChannelDeleteEvent;
+import lombok.RequiredArgsConstructor;
+import net.flectone.bot.module.discord.cache.ThreadCache;
+import reactor.core.publisher.Mono;
+
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class ThreadChannelDeleteListener implements EventListener<ThreadChannelDeleteEvent> {
+
+    private final ThreadCache threadCache;
+
+    @Override
+    public Class<ThreadChannelDeleteEvent> getEventType() {
+        return ThreadChannelDeleteEvent.class;
+    }
+
+    @Override
+    public Mono<Void> handle(ThreadChannelDeleteEvent event) {
+        threadCache.remove(event.getChannel().getId());
+        return Mono.empty();
+    }
+
+}
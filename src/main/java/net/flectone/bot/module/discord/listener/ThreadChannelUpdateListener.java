@@ -0,0 +1,27 @@
+package net.flectone.bot.module.discord.listener;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import discord4j.core.event.domain.thread.ThreadChannelUpdateEvent;
+import lombok.RequiredArgsConstructor;
+import net.flectone.bot.module.discord.cache.ThreadCache;
+import reactor.core.publisher.Mono;
+
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class ThreadChannelUpdateListener implements EventListener<ThreadChannelUpdateEvent> {
+
+    private final ThreadCache threadCache;
+
+    @Override
+    public Class<ThreadChannelUpdateEvent> getEventType() {
+        return ThreadChannelUpdateEvent.class;
+    }
+
+    @Override
+    public Mono<Void> handle(ThreadChannelUpdateEvent event) {
+        threadCache.update(event.getChannel());
+        return Mono.empty();
+    }
+
+}
@@ -1,24 +1,42 @@
 package net.flectone.bot.module.discord.register;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.hash.Hashing;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import discord4j.common.JacksonResources;
 import discord4j.common.util.Snowflake;
+import discord4j.discordjson.json.ApplicationCommandRequest;
 import discord4j.rest.service.ApplicationService;
 import lombok.RequiredArgsConstructor;
 import net.flectone.bot.module.discord.command.Command;
 import org.apache.logging.log4j.Logger;
+import reactor.core.publisher.Mono;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.ObjectMapper;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Singleton
 @RequiredArgsConstructor(onConstructor = @__(@Inject))
 public class CommandRegistry {
 
+    private static final String FILE_NAME = "commands.yml";
+
     private final Map<String, Command> commands = new ConcurrentHashMap<>();
+
+    // hash of the last command set discord accepted, per guild
+    private final Map<Long, String> syncedHashes = new ConcurrentHashMap<>();
+
+    private final com.fasterxml.jackson.databind.ObjectMapper jsonMapper = JacksonResources.create().getObjectMapper();
+
+    private final @Named("projectPath") Path projectPath;
+    private final ObjectMapper yamlMapper;
     private final Logger logger;
 
     public void registerGlobal(ApplicationService applicationService, long applicationId, Command command) {
@@ -43,6 +61,53 @@ public class CommandRegistry {
                 .subscribe();
     }
 
+    // local handlers are always replaced, discord gets the whole set in one request and only when it differs from the last sync
+    public Mono<Void> syncGuild(ApplicationService applicationService, long applicationId, Collection<? extends Command> guildCommands, Snowflake guildId) {
+        Map<String, Command> current = new HashMap<>();
+        guildCommands.forEach(command -> current.put(command.getConfig().name(), command));
+
+        commands.putAll(current);
+        commands.keySet().retainAll(current.keySet());
+
+        List<ApplicationCommandRequest> requests = guildCommands.stream()
+                .map(Command::getRequest)
+                .toList();
+
+        String hash = hash(applicationId, requests);
+        if (hash.equals(syncedHashes.get(guildId.asLong()))) {
+            logger.info("Guild commands for guild {} are up to date", guildId.asString());
+            return Mono.empty();
+        }
+
+        logger.info("Registering {} guild commands in Discord for guild {}", requests.size(), guildId.asString());
+
+        return applicationService.bulkOverwriteGuildApplicationCommand(applicationId, guildId.asLong(), requests)
+                .collectList()
+                .doOnNext(registered -> {
+                    syncedHashes.put(guildId.asLong(), hash);
+                    save();
+
+                    logger.info("Successfully registered {} guild commands for guild {}", registered.size(), guildId.asString());
+                })
+                .doOnError(error -> logger.error("Failed to register guild commands for guild {}", guildId.asString(), error))
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    public void load() {
+        Path path = projectPath.resolve(FILE_NAME);
+        if (!Files.exists(path)) return;
+
+        try {
+            Map<Long, String> stored = yamlMapper.readValue(path.toFile(), new TypeReference<HashMap<Long, String>>() {});
+            if (stored == null) return;
+
+            syncedHashes.putAll(stored);
+        } catch (Exception e) {
+            logger.warn("Failed to read {}", FILE_NAME, e);
+        }
+    }
+
     public List<String> getRegisteredCommands() {
         return new ArrayList<>(commands.keySet());
     }
@@ -55,4 +120,27 @@ public class CommandRegistry {
         return commands.containsKey(name);
     }
 
-}
\ No newline at end of file
+    // the request is what discord stores, so commands that only differ in their local messages keep the same hash
+    // hashed as the json discord4j sends, toString is a debug format that can change with the library
+    private String hash(long applicationId, List<ApplicationCommandRequest> requests) {
+        try {
+            String content = applicationId + "\n" + jsonMapper.writeValueAsString(requests);
+            return Hashing.sha256().hashString(content, StandardCharsets.UTF_8).toString();
+        } catch (JsonProcessingException e) {
+            // an empty hash never matches, so the commands are sent as if they changed
+            logger.warn("Failed to hash guild commands", e);
+            return "";
+        }
+    }
+
+    private synchronized void save() {
+        try {
+            Path path = projectPath.resolve(FILE_NAME);
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, yamlMapper.writeValueAsString(new TreeMap<>(syncedHashes)));
+        } catch (Exception e) {
+            logger.warn("Failed to write {}", FILE_NAME, e);
+        }
+    }
+
+}
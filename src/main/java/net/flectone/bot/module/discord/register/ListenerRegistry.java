@@ -6,41 +6,186 @@ import discord4j.core.GatewayDiscordClient;
 import discord4j.core.event.domain.Event;
 import lombok.RequiredArgsConstructor;
 import net.flectone.bot.module.discord.listener.EventListener;
+import net.flectone.bot.util.metrics.MetricRegistry;
 import org.apache.logging.log4j.Logger;
 import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Singleton
 @RequiredArgsConstructor(onConstructor = @__(@Inject))
 public class ListenerRegistry {
 
-    private final Map<Class<? extends EventListener<?>>, Disposable> subscriptions = new ConcurrentHashMap<>();
+    private static final int MAX_PENDING = 4096;
+
+    private final Map<Class<? extends EventListener<?>>, Registration> registrations = new ConcurrentHashMap<>();
+    private final MetricRegistry metricRegistry;
     private final Logger logger;
 
-    @SuppressWarnings("unchecked")
     public <E extends Event> void register(GatewayDiscordClient client, EventListener<E> listener) {
-        Disposable disposable = client.on(listener.getEventType())
-                .flatMap(listener::handle)
-                .onErrorContinue((throwable, obj) ->
-                        logger.error("Error in listener {}: {}", listener.getClass().getSimpleName(), throwable.getMessage())
-                )
+        register(client, listener, CompletableFuture.completedFuture(null));
+    }
+
+    // every listener has its own queue, concurrency limit and threads, so a slow one cannot hold back the others
+    // events that come in before the dependency is ready wait for it instead of being lost
+    @SuppressWarnings("unchecked")
+    public <E extends Event> void register(GatewayDiscordClient client, EventListener<E> listener, CompletableFuture<Void> dependency) {
+        String name = listener.getClass().getSimpleName();
+        Registration registration = new Registration(name);
+
+        registration.subscription = client.on(listener.getEventType())
+                .doOnNext(event -> registration.queued.incrementAndGet())
+                // the gateway multicasts events, without a buffer of its own the slowest listener would slow down every listener
+                // the buffer is bounded, when a listener falls that far behind the oldest events are dropped
+                .onBackpressureBuffer(MAX_PENDING, event -> {
+                    registration.drop();
+                    logger.warn("Listener {} is {} events behind, the oldest one was dropped", name, MAX_PENDING);
+                }, BufferOverflowStrategy.DROP_OLDEST)
+                // waiting for the previous event of the same key does not take a slot, only running events count towards the limit
+                .flatMap(event -> registration.turn(listener.getOrderKey(event), event), MAX_PENDING)
+                .flatMap(turn -> handle(registration, listener, turn, dependency), Math.max(1, listener.getConcurrency()))
                 .subscribe();
 
-        subscriptions.put((Class<? extends EventListener<?>>) listener.getClass(), disposable);
-        logger.info("Registered listener: {}", listener.getClass().getSimpleName());
+        Registration previous = registrations.put((Class<? extends EventListener<?>>) listener.getClass(), registration);
+        if (previous != null) {
+            previous.dispose();
+        }
+
+        metricRegistry.gauge("flectonebot_listener_in_flight", "Events a listener is handling", registration.inFlight::get, "listener", name);
+        metricRegistry.gauge("flectonebot_listener_queued", "Events waiting for a listener", registration.queued::get, "listener", name);
+        metricRegistry.counter("flectonebot_listener_handled_total", "Events a listener has handled", registration.handled::get, "listener", name);
+        metricRegistry.counter("flectonebot_listener_errors_total", "Events a listener failed to handle", registration.errors::get, "listener", name);
+        metricRegistry.counter("flectonebot_listener_dropped_total", "Events dropped because a listener queue was full", registration.dropped::get, "listener", name);
+
+        logger.info("Registered listener: {}", name);
     }
 
     public List<String> getRegisteredListeners() {
-        return subscriptions.keySet().stream()
-                .map(Class::getSimpleName)
+        return registrations.values().stream()
+                .map(registration -> registration.name)
                 .toList();
     }
 
     public boolean isRegistered(Class<? extends EventListener<?>> listenerClass) {
-        return subscriptions.containsKey(listenerClass);
+        return registrations.containsKey(listenerClass);
+    }
+
+    public List<Stats> getStats() {
+        return registrations.values().stream()
+                .map(Registration::stats)
+                .toList();
+    }
+
+    public void shutdown() {
+        registrations.values().forEach(Registration::dispose);
+        registrations.clear();
+    }
+
+    private <E extends Event> Mono<Void> handle(Registration registration, EventListener<E> listener, Turn<E> turn, CompletableFuture<Void> dependency) {
+        return Mono.defer(() -> {
+                    registration.queued.decrementAndGet();
+                    registration.inFlight.incrementAndGet();
+
+                    Mono<Void> handled = Mono.defer(() -> listener.handle(turn.event()))
+                            .subscribeOn(registration.scheduler);
+
+                    // inside the error handling, a failed dependency fails this event and not the whole subscription
+                    if (!dependency.isDone() || dependency.isCompletedExceptionally()) {
+                        // the platform is disabled or failed to start, there is nothing to relay to
+                        handled = Mono.fromFuture(dependency)
+                                .then(handled)
+                                .onErrorResume(throwable -> dependency.isCompletedExceptionally() ? Mono.empty() : Mono.error(throwable));
+                    }
+
+                    return handled;
+                })
+                .doOnSuccess(ignored -> registration.handled.incrementAndGet())
+                .onErrorResume(throwable -> {
+                    registration.errors.incrementAndGet();
+                    logger.error("Error in listener {}", registration.name, throwable);
+                    return Mono.empty();
+                })
+                .doFinally(signal -> {
+                    registration.inFlight.decrementAndGet();
+                    turn.release().run();
+                });
+    }
+
+    private record Turn<E>(E event, Runnable release) {}
+
+    public record Stats(String name, int inFlight, int queued, long handled, long errors) {}
+
+    private static class Registration {
+
+        // completion of the last event per key, the next event of that key starts after it
+        private final Map<Object, Mono<Void>> tails = new ConcurrentHashMap<>();
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicLong handled = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+
+        private final String name;
+        private final Scheduler scheduler;
+
+        private Disposable subscription;
+
+        private Registration(String name) {
+            this.name = name;
+            this.scheduler = Schedulers.fromExecutorService(
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("FlectoneBot-" + name + "-", 0).factory()),
+                    name
+            );
+        }
+
+        // emits the event once the previous event of its key is done, events without a key go right away
+        private <E> Mono<Turn<E>> turn(Object key, E event) {
+            if (key == null) return Mono.just(new Turn<>(event, () -> {}));
+
+            Sinks.Empty<Void> done = Sinks.empty();
+            Mono<Void> tail = done.asMono();
+
+            Mono<Void> previous = tails.put(key, tail);
+
+            Turn<E> turn = new Turn<>(event, () -> {
+                done.tryEmitEmpty();
+
+                // the last event of a key cleans up after itself, so idle keys do not stay in the map
+                tails.remove(key, tail);
+            });
+
+            return previous == null ? Mono.just(turn) : previous.thenReturn(turn);
+        }
+
+        private void drop() {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+        }
+
+        private Stats stats() {
+            return new Stats(name, inFlight.get(), queued.get(), handled.get(), errors.get());
+        }
+
+        private void dispose() {
+            if (subscription != null) {
+                subscription.dispose();
+            }
+
+            scheduler.dispose();
+        }
+
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,159 @@
+package net.flectone.bot.module.discord.register;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import discord4j.core.spec.WebhookCreateSpec;
+import discord4j.discordjson.json.WebhookData;
+import discord4j.rest.http.client.ClientException;
+import discord4j.rest.service.WebhookService;
+import lombok.RequiredArgsConstructor;
+import net.flectone.bot.BuildConfig;
+import net.flectone.bot.model.discord.WebhookEntry;
+import net.flectone.bot.module.discord.DiscordBot;
+import org.apache.logging.log4j.Logger;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class WebhookRegistry {
+
+    private static final String FILE_NAME = "webhooks.yml";
+    private static final int UNKNOWN_WEBHOOK = 10015;
+
+    // pending or completed lookup per channel, so concurrent messages share one creation request
+    private final Map<Long, Mono<WebhookEntry>> webhooks = new ConcurrentHashMap<>();
+    private final Map<Long, WebhookEntry> resolved = new ConcurrentHashMap<>();
+
+    private final @Named("projectPath") Path projectPath;
+    private final ObjectMapper yamlMapper;
+    private final Provider<DiscordBot> discordBotProvider;
+    private final Logger logger;
+
+    public Mono<WebhookEntry> get(long channelId) {
+        return webhooks.computeIfAbsent(channelId, this::create);
+    }
+
+    public void put(long channelId, WebhookEntry webhookEntry) {
+        resolved.put(channelId, webhookEntry);
+        webhooks.put(channelId, Mono.just(webhookEntry));
+    }
+
+    // a late error of an old webhook must not drop the one created after it
+    public void invalidate(long channelId, WebhookEntry webhookEntry) {
+        if (!resolved.remove(channelId, webhookEntry)) return;
+
+        webhooks.remove(channelId);
+        save();
+    }
+
+    // a 404 also comes for a deleted message or thread, only this code means the webhook itself is gone
+    public static boolean isUnknownWebhook(Throwable throwable) {
+        if (!(throwable instanceof ClientException clientException)) return false;
+        if (clientException.getStatus().code() != 404) return false;
+
+        return clientException.getErrorResponse()
+                .map(errorResponse -> errorResponse.getFields().get("code"))
+                .filter(code -> code instanceof Number number && number.intValue() == UNKNOWN_WEBHOOK)
+                .isPresent();
+    }
+
+    public boolean contains(long channelId) {
+        return resolved.containsKey(channelId);
+    }
+
+    public void load() {
+        Path path = projectPath.resolve(FILE_NAME);
+        if (!Files.exists(path)) return;
+
+        try {
+            Map<Long, WebhookEntry> stored = yamlMapper.readValue(path.toFile(), new TypeReference<HashMap<Long, WebhookEntry>>() {});
+            if (stored == null) return;
+
+            stored.forEach(this::put);
+        } catch (Exception e) {
+            logger.warn("Failed to read {}", FILE_NAME, e);
+        }
+    }
+
+    // keeps one bot webhook per channel without a stored entry and removes the duplicates
+    public Mono<Void> sync(Collection<Long> channelIds, long clientId) {
+        WebhookService webhookService = discordBotProvider.get().getDiscordClient().getWebhookService();
+
+        return Flux.fromIterable(channelIds)
+                .filter(channelId -> !contains(channelId))
+                .flatMap(channelId -> webhookService.getChannelWebhooks(channelId)
+                        .filter(data -> data.applicationId().isPresent() && data.applicationId().get().asLong() == clientId)
+                        .collectList()
+                        .flatMap(botWebhooks -> keepFirst(webhookService, channelId, botWebhooks))
+                        .onErrorResume(e -> {
+                            logger.warn(e);
+                            return Mono.empty();
+                        })
+                )
+                .then(Mono.fromRunnable(this::save));
+    }
+
+    private Mono<Void> keepFirst(WebhookService webhookService, long channelId, List<WebhookData> botWebhooks) {
+        if (botWebhooks.isEmpty()) return Mono.empty();
+
+        WebhookData kept = botWebhooks.getFirst();
+        if (kept.token().isAbsent()) return Mono.empty();
+
+        put(channelId, new WebhookEntry(kept.id().asLong(), kept.token().get()));
+
+        return Flux.fromIterable(botWebhooks.subList(1, botWebhooks.size()))
+                .flatMap(data -> webhookService.deleteWebhook(data.id().asLong(), null))
+                .then();
+    }
+
+    private Mono<WebhookEntry> create(long channelId) {
+        WebhookCreateSpec webhook = WebhookCreateSpec.builder()
+                .name(BuildConfig.PROJECT_NAME + "Webhook")
+                .build();
+
+        // cache() subscribes lazily, so the reference is set before the request can fail
+        AtomicReference<Mono<WebhookEntry>> pending = new AtomicReference<>();
+
+        pending.set(discordBotProvider.get().getDiscordClient().getWebhookService()
+                .createWebhook(channelId, webhook.asRequest(), null)
+                .map(data -> new WebhookEntry(data.id().asLong(), data.token().get()))
+                .doOnNext(webhookEntry -> {
+                    resolved.put(channelId, webhookEntry);
+                    save();
+                })
+                .doOnError(e -> {
+                    webhooks.remove(channelId, pending.get());
+                    logger.warn("Failed to create webhook for channel {}", channelId, e);
+                })
+                .cache()
+        );
+
+        return pending.get();
+    }
+
+    private synchronized void save() {
+        try {
+            Path path = projectPath.resolve(FILE_NAME);
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, yamlMapper.writeValueAsString(new TreeMap<>(resolved)));
+        } catch (Exception e) {
+            logger.warn("Failed to write {}", FILE_NAME, e);
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package net.flectone.bot.module.discord.sender;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import lombok.RequiredArgsConstructor;
+import discord4j.discordjson.json.MessageData;
+import net.flectone.bot.config.Integration;
+import net.flectone.bot.model.route.DiscordTarget;
+import net.flectone.bot.util.file.FileFacade;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class MessageBatcher {
+
+    private static final String SEPARATOR = "\n";
+
+    private final Map<DiscordTarget, Batch> batches = new HashMap<>();
+
+    private final FileFacade fileFacade;
+
+    public Integration.Discord.Batch config() {
+        return fileFacade.integration().discord().batch();
+    }
+
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(config().enable());
+    }
+
+    // merges consecutive messages of one author into a channel, another author flushes the batch to keep the order
+    public synchronized Mono<MessageData> add(DiscordTarget channel, String author, String content, Function<String, Mono<MessageData>> sender) {
+        int maxLength = config().maxLength();
+
+        Batch batch = batches.get(channel);
+        if (batch != null && (!batch.author.equals(author) || batch.length() + SEPARATOR.length() + content.length() > maxLength)) {
+            flush(channel);
+            batch = null;
+        }
+
+        if (content.length() >= maxLength) {
+            return sender.apply(content);
+        }
+
+        if (batch == null) {
+            Batch newBatch = new Batch(author, sender);
+            newBatch.timer = Schedulers.parallel().schedule(() -> flush(channel, newBatch), config().window(), TimeUnit.MILLISECONDS);
+
+            batches.put(channel, newBatch);
+            batch = newBatch;
+        }
+
+        batch.append(content);
+
+        // every merged message resolves to the same sent message
+        return batch.result.asMono();
+    }
+
+    public synchronized void flush(DiscordTarget channel) {
+        Batch batch = batches.remove(channel);
+        if (batch == null) return;
+
+        batch.send();
+    }
+
+    private synchronized void flush(DiscordTarget channel, Batch batch) {
+        if (!batches.remove(channel, batch)) return;
+
+        batch.send();
+    }
+
+    private static class Batch {
+
+        private final String author;
+        private final Function<String, Mono<MessageData>> sender;
+        private final Sinks.One<MessageData> result = Sinks.one();
+        private final StringBuilder content = new StringBuilder();
+        private Disposable timer;
+
+        private Batch(String author, Function<String, Mono<MessageData>> sender) {
+            this.author = author;
+            this.sender = sender;
+        }
+
+        private int length() {
+            return content.length();
+        }
+
+        private void append(String text) {
+            if (!content.isEmpty()) {
+                content.append(SEPARATOR);
+            }
+
+            content.append(text);
+        }
+
+        private void send() {
+            timer.dispose();
+            sender.apply(content.toString()).subscribe(
+                    result::tryEmitValue,
+                    result::tryEmitError,
+                    result::tryEmitEmpty
+            );
+        }
+
+    }
+
+}
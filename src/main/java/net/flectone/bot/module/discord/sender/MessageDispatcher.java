@@ -0,0 +1,206 @@
+package net.flectone.bot.module.discord.sender;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import net.flectone.bot.config.Integration;
+import net.flectone.bot.util.file.FileFacade;
+import net.flectone.bot.util.limiter.TokenBucket;
+import net.flectone.bot.util.metrics.LatencyHistogram;
+import net.flectone.bot.util.trace.RelayTrace;
+import org.apache.logging.log4j.Logger;
+import org.jspecify.annotations.Nullable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class MessageDispatcher {
+
+    private final Map<Long, Route> routes = new ConcurrentHashMap<>();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    // time of the rest request itself, without waiting in the queue or for the rate limit
+    @Getter
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+
+    private final FileFacade fileFacade;
+    private final Logger logger;
+
+    public Integration.Discord.Dispatch config() {
+        return fileFacade.integration().discord().dispatch();
+    }
+
+    // requests with the same route are sent one by one in the order they were dispatched
+    public <T> Mono<T> dispatch(long route, Supplier<Mono<T>> request) {
+        return dispatch(route, null, request);
+    }
+
+    public <T> Mono<T> dispatch(long route, @Nullable RelayTrace trace, Supplier<Mono<T>> request) {
+        Sinks.One<T> result = Sinks.one();
+
+        Task<T> task = new Task<>(request, result, trace);
+        AtomicBoolean accepted = new AtomicBoolean();
+
+        // offered under the map lock, so an idle route is never removed with a task in it
+        Route targetRoute = routes.compute(route, (id, existing) -> {
+            Route value = existing == null ? new Route(id) : existing;
+            accepted.set(value.offer(task));
+            return value;
+        });
+
+        if (!accepted.get()) {
+            dropped.incrementAndGet();
+            logger.warn("Discord queue for {} is full, message dropped", route);
+
+            // an error, so the caller still finishes its trace and metrics
+            result.tryEmitError(new RejectedExecutionException("Discord queue for " + route + " is full"));
+        } else {
+            targetRoute.drain();
+        }
+
+        return result.asMono();
+    }
+
+    public int getQueued() {
+        return routes.values().stream().mapToInt(Route::size).sum();
+    }
+
+    public long getDispatched() {
+        return dispatched.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    private <T> Mono<T> timed(Mono<T> request) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return request.doFinally(signal -> requestLatency.recordSince(start));
+        });
+    }
+
+    private record Task<T>(Supplier<Mono<T>> request, Sinks.One<T> result, @Nullable RelayTrace trace) {}
+
+    private class Route {
+
+        private final Queue<Task<?>> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final long id;
+
+        private Integration.Discord.Dispatch limits;
+        private TokenBucket bucket;
+
+        private Route(long id) {
+            this.id = id;
+        }
+
+        // the limit is read on every offer, so a reloaded queue_size applies right away
+        private boolean offer(Task<?> task) {
+            if (size.incrementAndGet() > Math.max(1, config().queueSize())) {
+                size.decrementAndGet();
+                return false;
+            }
+
+            queue.offer(task);
+            return true;
+        }
+
+        private int size() {
+            return size.get();
+        }
+
+        private void drain() {
+            if (!running.compareAndSet(false, true)) return;
+
+            Task<?> task = queue.poll();
+            if (task == null) {
+                running.set(false);
+
+                // something could be added between poll and set
+                if (!queue.isEmpty()) {
+                    drain();
+                    return;
+                }
+
+                // a route of a channel that went quiet is removed once its bucket is full again
+                Mono.delay(Duration.ofMillis(Math.max(0, config().bucketPeriod()))).subscribe(ignored -> evict());
+                return;
+            }
+
+            size.decrementAndGet();
+
+            execute(task).doFinally(signal -> {
+                running.set(false);
+                drain();
+            }).subscribe();
+        }
+
+        private void evict() {
+            routes.computeIfPresent(id, (k, value) -> value == this && isIdle() ? null : value);
+        }
+
+        private boolean isIdle() {
+            return size.get() == 0 && !running.get() && bucket().isFull();
+        }
+
+        // only the running task uses the bucket, a reloaded dispatch config replaces it for the next one
+        private synchronized TokenBucket bucket() {
+            Integration.Discord.Dispatch config = config();
+            if (bucket == null || !config.equals(limits)) {
+                limits = config;
+                bucket = new TokenBucket(config.bucketSize(), Duration.ofMillis(config.bucketPeriod()));
+            }
+
+            return bucket;
+        }
+
+        private <T> Mono<T> execute(Task<T> task) {
+            TokenBucket taskBucket = bucket();
+
+            return Mono.defer(() -> Mono.delay(taskBucket.reserve()).then(Mono.defer(() -> {
+                        if (task.trace() != null) {
+                            task.trace().mark(RelayTrace.Stage.DISPATCH);
+                        }
+
+                        return timed(task.request().get());
+                    }))))
+                    // a 429 is already waited out and retried by the discord4j router
+                    .doOnNext(value -> task.result().tryEmitValue(value))
+                    .doOnSuccess(value -> {
+                        dispatched.incrementAndGet();
+                        if (value == null) {
+                            task.result().tryEmitEmpty();
+                        }
+                    })
+                    .doOnError(e -> {
+                        failed.incrementAndGet();
+                        logger.warn("Failed to send discord request for {}", id, e);
+                        task.result().tryEmitError(e);
+                    })
+                    .onErrorResume(e -> Mono.empty());
+        }
+
+    }
+
+}
@@ -4,47 +4,58 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import discord4j.common.util.Snowflake;
 import discord4j.core.event.domain.interaction.DeferrableInteractionEvent;
-import discord4j.core.object.component.ActionRow;
-import discord4j.core.object.component.Button;
-import discord4j.core.object.component.MessageComponent;
-import discord4j.core.object.entity.channel.ForumChannel;
 import discord4j.core.spec.EmbedCreateSpec;
 import discord4j.core.spec.InteractionApplicationCommandCallbackSpec;
 import discord4j.core.spec.MessageCreateSpec;
-import discord4j.core.spec.WebhookCreateSpec;
+import discord4j.discordjson.Id;
+import discord4j.discordjson.possible.Possible;
 import discord4j.discordjson.json.*;
+import discord4j.rest.http.client.ClientException;
+import discord4j.rest.request.DiscordWebRequest;
+import discord4j.rest.route.Routes;
 import discord4j.rest.util.AllowedMentions;
 import discord4j.rest.util.MultipartRequest;
 import lombok.RequiredArgsConstructor;
-import net.flectone.bot.BuildConfig;
 import net.flectone.bot.config.Integration;
+import net.flectone.bot.model.discord.ComponentSkeleton;
+import net.flectone.bot.model.route.DiscordTarget;
 import net.flectone.bot.module.discord.DiscordBot;
+import net.flectone.bot.module.discord.cache.EmbedCache;
+import net.flectone.bot.module.discord.cache.ThreadCache;
 import net.flectone.bot.module.discord.formatter.DiscordFormatter;
+import net.flectone.bot.module.discord.register.WebhookRegistry;
+import net.flectone.bot.util.trace.RelayTrace;
 import org.apache.commons.lang3.StringUtils;
+import org.jspecify.annotations.Nullable;
 import reactor.core.publisher.Mono;
 
-import java.awt.*;
-import java.time.Instant;
 import java.util.*;
-import java.util.List;
 import java.util.function.UnaryOperator;
-import java.util.stream.Collectors;
 
 @Singleton
 @RequiredArgsConstructor(onConstructor = @__(@Inject))
 public class MessageSender {
 
-    private final Map<Long, WebhookData> channelWebhooks = new HashMap<>();
-
     private final DiscordBot discordBot;
     private final DiscordFormatter discordFormatter;
-
-    public void putWebhook(Long channelId, WebhookData webhookData) {
-        channelWebhooks.put(channelId, webhookData);
+    private final EmbedCache embedCache;
+    private final WebhookRegistry webhookRegistry;
+    private final ThreadCache threadCache;
+    private final MessageDispatcher messageDispatcher;
+    private final MessageBatcher messageBatcher;
+
+    public Mono<MessageData> sendMessage(String sender, DiscordTarget target, Integration.WithEmbed channelEmbed, UnaryOperator<String> discordString, ComponentSkeleton components) {
+        return sendMessage(sender, target, channelEmbed, discordString, components, null, null);
     }
 
-    public void sendMessage(String sender, String channel, Integration.WithEmbed channelEmbed, UnaryOperator<String> discordString, List<Button> buttons) {
-        if (channelEmbed == null) return;
+    public Mono<MessageData> sendMessage(String sender,
+                                         DiscordTarget target,
+                                         Integration.WithEmbed channelEmbed,
+                                         UnaryOperator<String> discordString,
+                                         ComponentSkeleton components,
+                                         @Nullable Long replyTo,
+                                         @Nullable RelayTrace trace) {
+        if (channelEmbed == null) return Mono.empty();
 
         Integration.Discord.Embed messageEmbed = channelEmbed.embed();
 
@@ -53,64 +64,27 @@ public class MessageSender {
             embed = createEmbed(messageEmbed, discordString);
         }
 
-        Snowflake channelId = parseChannelId(channel);
-        Snowflake threadId = parseThreadId(channel);
+        Snowflake channelId = target.channel();
+        Snowflake threadId = target.thread();
 
         String webhookAvatar = channelEmbed.webhookAvatar();
         if (StringUtils.isNotEmpty(webhookAvatar)) {
-            WebhookData webhookData = channelWebhooks.get(channelId.asLong());
-
-            if (webhookData == null) {
-                webhookData = createWebhook(channelId.asLong());
-                if (webhookData == null) return;
-
-                channelWebhooks.put(channelId.asLong(), webhookData);
-            }
-
-            ImmutableWebhookExecuteRequest.Builder webhookBuilder = WebhookExecuteRequest.builder()
-                    .allowedMentions(AllowedMentionsData.builder().build())
-                    .username(sender)
-                    .avatarUrl(discordString.apply(webhookAvatar))
-                    .content(discordString.apply(channelEmbed.message()));
-
-            if (embed != null) {
-                webhookBuilder.addEmbed(embed.asRequest());
-            }
-
-            if (!buttons.isEmpty()) {
-                List<ComponentData> buttonData = buttons.stream()
-                        .map(btn -> ComponentData.builder()
-                                .type(MessageComponent.Type.BUTTON.getValue())
-                                .style(btn.getStyle().getValue())
-                                .customId(btn.getCustomId())
-                                .label(btn.getLabel().get())
-                                .build()
-                        )
-                        .collect(Collectors.toList());
-
-                webhookBuilder.addAllComponents(buttonData);
-            }
-
-            if (threadId == null) {
-                discordBot.getDiscordClient().getWebhookService().executeWebhook(
-                        webhookData.id().asLong(),
-                        webhookData.token().get(),
-                        false,
-                        MultipartRequest.ofRequest(webhookBuilder.build())
-                ).subscribe();
-            } else {
-                discordBot.getDiscordClient().getWebhookService().executeWebhook(
-                        webhookData.id().asLong(),
-                        webhookData.token().get(),
-                        false,
-                        threadId.asLong(),
-                        MultipartRequest.ofRequest(webhookBuilder.build())
-                ).subscribe();
+            String avatarUrl = discordString.apply(webhookAvatar);
+            String content = discordString.apply(channelEmbed.message());
+
+            // only plain text can be merged, embeds and buttons belong to a single message
+            if (embed == null && components.isEmpty() && StringUtils.isNotEmpty(content) && messageBatcher.isEnabled()) {
+                return messageBatcher.add(target, sender + avatarUrl, content, batchedContent ->
+                        executeWebhook(channelId, threadId, createWebhookRequest(sender, avatarUrl, batchedContent, null, components), trace)
+                );
             }
 
-            return;
+            messageBatcher.flush(target);
+            return executeWebhook(channelId, threadId, createWebhookRequest(sender, avatarUrl, content, embed, components), trace);
         }
 
+        messageBatcher.flush(target);
+
         MessageCreateSpec.Builder messageCreateSpecBuilder = MessageCreateSpec.builder().allowedMentions(AllowedMentions.suppressAll());
 
         if (embed != null) {
@@ -118,94 +92,134 @@ public class MessageSender {
         }
 
         String content = discordString.apply(channelEmbed.message());
-        if (StringUtils.isEmpty(content) && embed == null) return;
+        if (StringUtils.isEmpty(content) && embed == null) return Mono.empty();
+
+        messageCreateSpecBuilder.content(content).components(components.actionRows());
+
+        MessageCreateRequest request = messageCreateSpecBuilder.build().asRequest();
+        if (replyTo != null) {
+            request = MessageCreateRequest.builder()
+                    .from(request)
+                    .messageReference(MessageReferenceData.builder()
+                            .messageId(Id.of(replyTo))
+                            .failIfNotExists(false)
+                            .build()
+                    )
+                    .build();
+        }
 
-        messageCreateSpecBuilder.content(content).components(ActionRow.of(buttons));
+        MessageCreateRequest messageRequest = request;
 
         if (threadId == null) {
-            discordBot.getDiscordClient().getChannelById(channelId)
-                    .createMessage(messageCreateSpecBuilder.build().asRequest())
-                    .subscribe();
+            return messageDispatcher.dispatch(channelId.asLong(), trace, () -> discordBot.getDiscordClient().getChannelById(channelId)
+                    .createMessage(messageRequest)
+            );
         } else {
-            discordBot.getGateway().getChannelById(channelId)
-                    .ofType(ForumChannel.class)
-                    .flatMapMany(ForumChannel::getActiveThreads)
-                    .filter(thread -> thread.getId().equals(threadId))
-                    .next()
-                    .flatMap(thread -> thread.createMessage(messageCreateSpecBuilder.build()))
-                    .subscribe();
+            // a thread is a channel itself, so there is no need to list the forum threads
+            return threadCache.get(threadId).flatMap(threadHandle -> messageDispatcher.dispatch(threadId.asLong(), trace, () -> threadHandle.channel()
+                    .createMessage(messageRequest)
+                    .doOnError(ClientException.isStatusCode(404), e -> threadCache.remove(threadId))
+            ));
         }
     }
 
-    private WebhookData createWebhook(long channelID) {
-        WebhookCreateSpec.Builder builder = WebhookCreateSpec.builder()
-                .name(BuildConfig.PROJECT_NAME + "Webhook");
+    private WebhookExecuteRequest createWebhookRequest(String sender,
+                                                       String avatarUrl,
+                                                       String content,
+                                                       EmbedCreateSpec embed,
+                                                       ComponentSkeleton components) {
+        ImmutableWebhookExecuteRequest.Builder webhookBuilder = WebhookExecuteRequest.builder()
+                .allowedMentions(AllowedMentionsData.builder().build())
+                .username(sender)
+                .avatarUrl(avatarUrl)
+                .content(content);
 
-        WebhookCreateSpec webhook = builder.build();
+        if (embed != null) {
+            webhookBuilder.addEmbed(embed.asRequest());
+        }
 
-        return discordBot.getDiscordClient().getWebhookService().createWebhook(channelID, webhook.asRequest(), null).block();
+        if (!components.isEmpty()) {
+            webhookBuilder.addAllComponents(components.buttonData());
+        }
+
+        return webhookBuilder.build();
     }
 
-    public EmbedCreateSpec createEmbed(Integration.Discord.Embed embed, UnaryOperator<String> discordString) {
-        EmbedCreateSpec.Builder embedBuilder = EmbedCreateSpec.builder();
+    private Mono<MessageData> executeWebhook(Snowflake channelId, Snowflake threadId, WebhookExecuteRequest webhookRequest, @Nullable RelayTrace trace) {
+        MultipartRequest<WebhookExecuteRequest> request = MultipartRequest.ofRequest(webhookRequest);
+        long webhookChannelId = channelId.asLong();
+
+        // one webhook per channel, so its rate limit bucket is the channel route
+        // wait for the created message, its id is needed for replies and edits
+        return messageDispatcher.dispatch(webhookChannelId, trace, () -> webhookRegistry.get(webhookChannelId)
+                .flatMap(webhook -> (threadId == null
+                        ? discordBot.getDiscordClient().getWebhookService().executeWebhook(webhook.id(), webhook.token(), true, request)
+                        : discordBot.getDiscordClient().getWebhookService().executeWebhook(webhook.id(), webhook.token(), true, threadId.asLong(), request))
+                        // webhook was removed from discord, the next message will create a new one
+                        .doOnError(WebhookRegistry::isUnknownWebhook, e -> webhookRegistry.invalidate(webhookChannelId, webhook))
+                )
+        );
+    }
 
-        if (StringUtils.isNotEmpty(embed.color())) {
-            Color color = Color.decode(embed.color());
-            embedBuilder.color(discord4j.rest.util.Color.of(color.getRGB()));
-        }
+    public Mono<MessageData> editMessage(DiscordTarget target, long messageId, Integration.WithEmbed channelEmbed, UnaryOperator<String> discordString) {
+        if (channelEmbed == null) return Mono.empty();
 
-        if (StringUtils.isNotEmpty(embed.title())) {
-            embedBuilder.title(discordString.apply(embed.title()));
-        }
+        String content = discordString.apply(channelEmbed.message());
+        List<EmbedData> embeds = channelEmbed.embed() != null
+                ? List.of(createEmbed(channelEmbed.embed(), discordString).asRequest())
+                : List.of();
 
-        if (StringUtils.isNotEmpty(embed.url())) {
-            embedBuilder.url(discordString.apply(embed.url()));
-        }
+        if (StringUtils.isEmpty(content) && embeds.isEmpty()) return Mono.empty();
 
-        Integration.Discord.Embed.Author author = embed.author();
-        if (author != null && (StringUtils.isNotEmpty(author.name())
-                || StringUtils.isNotEmpty(author.url())
-                || StringUtils.isNotEmpty(author.iconUrl()))) {
-            embedBuilder.author(
-                    discordString.apply(author.name()),
-                    discordString.apply(author.url()),
-                    discordString.apply(author.iconUrl())
-            );
-        }
+        long route = target.route();
 
-        if (StringUtils.isNotEmpty(embed.description())) {
-            embedBuilder.description(discordString.apply(embed.description()));
-        }
+        if (StringUtils.isNotEmpty(channelEmbed.webhookAvatar())) {
+            long webhookChannelId = target.channel().asLong();
 
-        if (StringUtils.isNotEmpty(embed.thumbnail())) {
-            embedBuilder.thumbnail(discordString.apply(embed.thumbnail()));
-        }
+            WebhookMessageEditRequest request = WebhookMessageEditRequest.builder()
+                    .content(Possible.of(Optional.ofNullable(StringUtils.defaultIfEmpty(content, null))))
+                    .embeds(Possible.of(Optional.of(embeds)))
+                    .build();
 
-        if (StringUtils.isNotEmpty(embed.image())) {
-            embedBuilder.image(discordString.apply(embed.image()));
-        }
+            Snowflake threadId = target.thread();
 
-        if (Boolean.TRUE.equals(embed.timestamp())) {
-            embedBuilder.timestamp(Instant.now());
-        }
+            // the webhook service edits without thread_id, but a message in a thread is only found with it
+            return messageDispatcher.dispatch(webhookChannelId, () -> webhookRegistry.get(webhookChannelId)
+                    .flatMap(webhook -> {
+                        DiscordWebRequest editRequest = Routes.WEBHOOK_MESSAGE_EDIT
+                                .newRequest(webhook.id(), webhook.token(), messageId)
+                                .body(request);
+
+                        if (threadId != null) {
+                            editRequest.query("thread_id", threadId.asLong());
+                        }
 
-        Integration.Discord.Embed.Footer footer = embed.footer();
-        if (footer != null && (StringUtils.isNotEmpty(footer.text()) || StringUtils.isNotEmpty(footer.iconUrl()))) {
-            embedBuilder.footer(
-                    discordString.apply(footer.text()),
-                    discordString.apply(footer.iconUrl())
+                        return editRequest.exchange(discordBot.getDiscordClient().getRestResources().getRouter())
+                                .bodyToMono(MessageData.class)
+                                .doOnError(WebhookRegistry::isUnknownWebhook, e -> webhookRegistry.invalidate(webhookChannelId, webhook));
+                    })
             );
         }
 
-        if (embed.fields() != null && !embed.fields().isEmpty()) {
-            for (Integration.Discord.Embed.Field field : embed.fields()) {
-                if (StringUtils.isEmpty(field.name()) || StringUtils.isEmpty(field.value())) continue;
+        MessageEditRequest request = MessageEditRequest.builder()
+                .content(Possible.of(Optional.ofNullable(StringUtils.defaultIfEmpty(content, null))))
+                .embeds(Possible.of(Optional.of(embeds)))
+                .build();
 
-                embedBuilder.addField(discordString.apply(field.name()), discordString.apply(field.value()), field.inline());
-            }
-        }
+        return messageDispatcher.dispatch(route, () -> discordBot.getDiscordClient()
+                .getMessageById(Snowflake.of(route), Snowflake.of(messageId))
+                .edit(request)
+        );
+    }
 
-        return embedBuilder.build();
+    public Mono<Void> deleteMessage(long channelId, long messageId) {
+        return messageDispatcher.dispatch(channelId, () -> discordBot.getDiscordClient().getChannelService()
+                .deleteMessage(channelId, messageId, null)
+        );
+    }
+
+    public EmbedCreateSpec createEmbed(Integration.Discord.Embed embed, UnaryOperator<String> discordString) {
+        return embedCache.getEmbed(embed).render(discordString);
     }
 
     public void sendMessage(Snowflake channel, String text) {
@@ -228,13 +242,13 @@ public class MessageSender {
         placeholders.putAll(additionalPlaceholders);
 
         UnaryOperator<String> formatter = text -> discordFormatter.formatMessage(text, placeholders);
-        List<Button> buttons = discordFormatter.createButtons(withEmbed, "");
+        ComponentSkeleton components = embedCache.getComponents(withEmbed);
 
         if (StringUtils.isNotEmpty(withEmbed.webhookAvatar())) {
-            return sendViaWebhook(event, withEmbed, formatter, buttons);
+            return sendViaWebhook(event, withEmbed, formatter, components);
         }
 
-        return sendDirectReply(event, withEmbed, formatter, buttons, privateReply);
+        return sendDirectReply(event, withEmbed, formatter, components, privateReply);
     }
 
     public Mono<Void> sendMessage(DeferrableInteractionEvent event,
@@ -247,21 +261,21 @@ public class MessageSender {
     private Mono<Void> sendViaWebhook(DeferrableInteractionEvent event,
                                       Integration.WithEmbed withEmbed,
                                       UnaryOperator<String> formatter,
-                                      List<Button> buttons) {
+                                      ComponentSkeleton components) {
 
         String senderName = event.getInteraction().getUser().getUsername();
         Snowflake channelId = event.getInteraction().getChannelId();
 
         return event.deferReply()
                 .withEphemeral(true)
-                .then(Mono.fromRunnable(() -> sendMessage(senderName, channelId.asString(), withEmbed, formatter, buttons)))
+                .then(Mono.fromRunnable(() -> sendMessage(senderName, DiscordTarget.of(channelId), withEmbed, formatter, components)))
                 .then(event.deleteReply());
     }
 
     private Mono<Void> sendDirectReply(DeferrableInteractionEvent event,
                                        Integration.WithEmbed withEmbed,
                                        UnaryOperator<String> formatter,
-                                       List<Button> buttons,
+                                       ComponentSkeleton components,
                                        boolean privateReply) {
 
         return event.reply(
@@ -270,24 +284,9 @@ public class MessageSender {
                                 formatter.apply(withEmbed.message()) : "")
                         .addAllEmbeds(withEmbed.embed() != null ?
                                 List.of(createEmbed(Objects.requireNonNull(withEmbed.embed()), formatter)) : List.of())
-                        .components(!buttons.isEmpty() ?
-                                List.of(ActionRow.of(buttons)) : List.of())
+                        .components(components.actionRows())
                         .ephemeral(privateReply)
                         .build()
         ).then();
     }
-
-    private Snowflake parseChannelId(String channelId) {
-        int forumIndex = channelId.indexOf('_');
-        if (forumIndex == -1) return Snowflake.of(channelId);
-
-        return Snowflake.of(channelId.substring(0, forumIndex));
-    }
-
-    private Snowflake parseThreadId(String channelId) {
-        int forumIndex = channelId.indexOf('_');
-        if (forumIndex == -1) return null;
-
-        return Snowflake.of(channelId.substring(forumIndex + 1));
-    }
-}
\ No newline at end of file
+}
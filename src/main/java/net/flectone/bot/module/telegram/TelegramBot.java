@@ -7,20 +7,28 @@ import lombok.RequiredArgsConstructor;
 import net.flectone.bot.config.Integration;
 import net.flectone.bot.module.Bot;
 import net.flectone.bot.module.telegram.listener.MessageListener;
+import net.flectone.bot.module.telegram.sender.MessageScheduler;
 import net.flectone.bot.processing.SystemVariableResolver;
 import net.flectone.bot.util.file.FileFacade;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.Logger;
 import org.telegram.telegrambots.client.okhttp.OkHttpTelegramClient;
 import org.telegram.telegrambots.longpolling.TelegramBotsLongPollingApplication;
+import org.telegram.telegrambots.longpolling.util.DefaultGetUpdatesGenerator;
+import org.telegram.telegrambots.meta.TelegramUrl;
 import org.telegram.telegrambots.meta.api.methods.botapimethods.BotApiMethod;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import java.net.URI;
+import java.util.Objects;
+
 @Singleton
 @RequiredArgsConstructor(onConstructor = @__(@Inject))
 public class TelegramBot implements Bot {
 
     private final FileFacade fileFacade;
     private final MessageListener messageListener;
+    private final MessageScheduler messageScheduler;
     private final SystemVariableResolver systemVariableResolver;
     private final Logger logger;
 
@@ -32,32 +40,64 @@ public class TelegramBot implements Bot {
     }
 
     @Override
-    public void startup() {
+    public boolean startup() {
         String token = systemVariableResolver.substituteEnvVars(config().token());
-        if (token.isEmpty()) return;
+        if (token.isEmpty()) return false;
 
         try {
-            telegramClient = new OkHttpTelegramClient(token);
+            TelegramUrl telegramUrl = createTelegramUrl(config().apiUrl());
+
+            telegramClient = new OkHttpTelegramClient(token, telegramUrl);
 
             botsApplication = new TelegramBotsLongPollingApplication();
-            botsApplication.registerBot(token, messageListener);
+            botsApplication.registerBot(token, () -> telegramUrl, new DefaultGetUpdatesGenerator(), messageListener);
 
             logger.info("✔ Telegram integration enabled");
 
-        } catch (Exception e) {
-            logger.warn(e);
+            // everything else is read from the current files on every update
+            fileFacade.addChangeListener((previousFiles, currentFiles) -> {
+                if (previousFiles == null) return;
+
+                Integration.Telegram previous = previousFiles.integration().telegram();
+                Integration.Telegram current = currentFiles.integration().telegram();
+                if (Objects.equals(previous.token(), current.token()) && Objects.equals(previous.apiUrl(), current.apiUrl())) return;
+
+                logger.warn("Telegram token or api url was changed, restart is required to apply it");
+            });
+
+            return true;
+        } catch (TelegramApiException e) {
+            throw new IllegalStateException("Failed to register telegram bot", e);
         }
     }
 
     @Override
     public void shutdown() {
-        if (botsApplication == null) return;
+        if (botsApplication != null) {
+            try {
+                botsApplication.close();
+            } catch (Exception e) {
+                logger.warn(e);
+            }
+        }
 
-        try {
-            botsApplication.close();
-        } catch (Exception e) {
-            logger.warn(e);
+        // polling is stopped, so no new updates come in behind the queued ones
+        messageListener.shutdown();
+        messageScheduler.shutdown();
+    }
+
+    // a local bot api server or the load test stub instead of api.telegram.org
+    private TelegramUrl createTelegramUrl(String apiUrl) {
+        if (StringUtils.isEmpty(apiUrl)) return TelegramUrl.DEFAULT_URL;
+
+        URI uri = URI.create(apiUrl);
+
+        int port = uri.getPort();
+        if (port == -1) {
+            port = "http".equals(uri.getScheme()) ? 80 : 443;
         }
+
+        return new TelegramUrl(uri.getScheme(), uri.getHost(), port, false);
     }
 
     public void executeMethod(BotApiMethod<?> method) {
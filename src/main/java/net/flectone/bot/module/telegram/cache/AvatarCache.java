@@ -0,0 +1,192 @@
+package net.flectone.bot.module.telegram.cache;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import lombok.RequiredArgsConstructor;
+import net.flectone.bot.config.Integration;
+import net.flectone.bot.module.telegram.TelegramBot;
+import net.flectone.bot.processing.SystemVariableResolver;
+import net.flectone.bot.util.file.FileFacade;
+import org.apache.commons.lang3.StringUtils;
+import org.telegram.telegrambots.meta.api.methods.GetFile;
+import org.telegram.telegrambots.meta.api.methods.GetUserProfilePhotos;
+import org.telegram.telegrambots.meta.api.objects.File;
+import org.telegram.telegrambots.meta.api.objects.photo.PhotoSize;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.generics.TelegramClient;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class AvatarCache {
+
+    private static final long EXPIRE_AFTER = TimeUnit.MINUTES.toMillis(50);
+    private static final long REFRESH_AFTER = TimeUnit.MINUTES.toMillis(40);
+    private static final long EXPIRE_EMPTY_AFTER = TimeUnit.MINUTES.toMillis(5);
+    private static final int MAXIMUM_SIZE = 1000;
+    private static final String DEFAULT_API_URL = "https://api.telegram.org";
+
+    // least recently used first, the eldest is removed once the cache is full
+    private final Map<Long, Entry> avatars = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > MAXIMUM_SIZE;
+        }
+    };
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private final FileFacade fileFacade;
+    private final Provider<TelegramBot> telegramBotProvider;
+    private final SystemVariableResolver systemVariableResolver;
+
+    // never waits, the avatar is loaded in the background for the next message
+    public String getNow(long userId, String fallback) {
+        CompletableFuture<String> future = get(userId);
+        if (!future.isDone() || future.isCompletedExceptionally()) {
+            misses.incrementAndGet();
+            return fallback;
+        }
+
+        hits.incrementAndGet();
+
+        String avatar = future.join();
+        return avatar.isEmpty() ? fallback : avatar;
+    }
+
+    // only what is already loaded, nothing is requested
+    public String getIfPresent(long userId, String fallback) {
+        Entry entry;
+        synchronized (avatars) {
+            entry = avatars.get(userId);
+        }
+
+        if (entry == null || !entry.future.isDone() || entry.future.isCompletedExceptionally()) return fallback;
+
+        return StringUtils.defaultIfEmpty(entry.future.join(), fallback);
+    }
+
+    public CompletableFuture<String> get(long userId) {
+        long now = System.currentTimeMillis();
+
+        // concurrent misses share one load, the request itself is sent outside the lock
+        Entry entry;
+        boolean created = false;
+        synchronized (avatars) {
+            entry = avatars.get(userId);
+            if (entry == null || entry.isExpired(now)) {
+                entry = new Entry(new CompletableFuture<>(), now);
+                avatars.put(userId, entry);
+                created = true;
+            }
+        }
+
+        if (created) {
+            CompletableFuture<String> future = entry.future;
+
+            // a first lookup that failed is cached as empty too, so it is not repeated for every message
+            load(userId).whenComplete((avatar, throwable) -> future.complete(throwable == null ? avatar : ""));
+        } else if (entry.needsRefresh(now) && entry.refreshing.compareAndSet(false, true)) {
+            refresh(userId, entry);
+        }
+
+        return entry.future;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (avatars) {
+            return avatars.size();
+        }
+    }
+
+    // a failed refresh keeps the avatar that was loaded before, until it expires
+    private void refresh(long userId, Entry entry) {
+        load(userId).thenAccept(avatar -> {
+            Entry refreshed = new Entry(CompletableFuture.completedFuture(avatar), System.currentTimeMillis());
+
+            synchronized (avatars) {
+                avatars.replace(userId, entry, refreshed);
+            }
+        });
+    }
+
+    // completes with an empty string if the user has no photo, and exceptionally if the lookup failed
+    private CompletableFuture<String> load(long userId) {
+        try {
+            TelegramClient telegramClient = telegramBotProvider.get().getTelegramClient();
+
+            return telegramClient.executeAsync(GetUserProfilePhotos.builder()
+                            .userId(userId)
+                            .limit(1)
+                            .build()
+                    )
+                    .thenCompose(userProfilePhotos -> {
+                        if (userProfilePhotos.getPhotos() == null || userProfilePhotos.getPhotos().isEmpty()) {
+                            return CompletableFuture.completedFuture("");
+                        }
+
+                        PhotoSize photoSize = userProfilePhotos.getPhotos().getFirst().getLast();
+
+                        try {
+                            return telegramClient.executeAsync(GetFile.builder().fileId(photoSize.getFileId()).build())
+                                    .thenApply(this::getPhotoUrl);
+                        } catch (TelegramApiException e) {
+                            return CompletableFuture.failedFuture(e);
+                        }
+                    });
+        } catch (Exception e) {
+            // a client that is not started yet fails the lookup like an api error
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private String getPhotoUrl(File file) {
+        Integration.Telegram telegram = fileFacade.integration().telegram();
+
+        String apiUrl = StringUtils.defaultIfEmpty(StringUtils.removeEnd(telegram.apiUrl(), "/"), DEFAULT_API_URL);
+        String token = systemVariableResolver.substituteEnvVars(telegram.token());
+        return apiUrl + "/file/bot" + token + "/" + file.getFilePath();
+    }
+
+    private static class Entry {
+
+        private final CompletableFuture<String> future;
+        private final long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(CompletableFuture<String> future, long loadedAt) {
+            this.future = future;
+            this.loadedAt = loadedAt;
+        }
+
+        private boolean isEmpty() {
+            return future.isDone() && future.getNow("").isEmpty();
+        }
+
+        private boolean isExpired(long now) {
+            return now - loadedAt > (isEmpty() ? EXPIRE_EMPTY_AFTER : EXPIRE_AFTER);
+        }
+
+        private boolean needsRefresh(long now) {
+            return future.isDone() && now - loadedAt > REFRESH_AFTER;
+        }
+
+    }
+
+}
@@ -1,155 +1,267 @@
 package net.flectone.bot.module.telegram.listener;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.inject.Inject;
-import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import lombok.RequiredArgsConstructor;
 import net.flectone.bot.config.Integration;
+import net.flectone.bot.data.repository.MessageMappingRepository;
+import net.flectone.bot.model.discord.ComponentSkeleton;
+import net.flectone.bot.model.file.FileSnapshot;
+import net.flectone.bot.model.mapping.MessageKey;
+import net.flectone.bot.model.mapping.Platform;
+import net.flectone.bot.model.route.DiscordTarget;
+import net.flectone.bot.model.route.TelegramTarget;
+import net.flectone.bot.module.BotReadiness;
 import net.flectone.bot.module.discord.sender.MessageSender;
-import net.flectone.bot.module.telegram.TelegramBot;
-import net.flectone.bot.processing.SystemVariableResolver;
+import net.flectone.bot.module.telegram.cache.AvatarCache;
+import net.flectone.bot.processing.TemplateCompiler;
+import net.flectone.bot.util.executor.Debouncer;
+import net.flectone.bot.util.executor.KeyedExecutor;
 import net.flectone.bot.util.file.FileFacade;
+import net.flectone.bot.util.metrics.RelayMetrics;
+import net.flectone.bot.util.trace.RelayTrace;
+import net.flectone.bot.util.trace.Tracer;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.Logger;
-import org.jetbrains.annotations.NotNull;
-import org.telegram.telegrambots.longpolling.util.LongPollingSingleThreadUpdateConsumer;
-import org.telegram.telegrambots.meta.api.methods.GetFile;
-import org.telegram.telegrambots.meta.api.methods.GetUserProfilePhotos;
-import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
-import org.telegram.telegrambots.meta.api.objects.File;
+import org.jspecify.annotations.Nullable;
+import org.telegram.telegrambots.longpolling.interfaces.LongPollingUpdateConsumer;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.api.objects.User;
 import org.telegram.telegrambots.meta.api.objects.message.Message;
-import org.telegram.telegrambots.meta.api.objects.photo.PhotoSize;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
 
 @Singleton
 @RequiredArgsConstructor(onConstructor = @__(@Inject))
-public class MessageListener implements LongPollingSingleThreadUpdateConsumer {
+public class MessageListener implements LongPollingUpdateConsumer {
 
-    private final LoadingCache<Long, String> userPhotos = CacheBuilder.newBuilder()
-            .expireAfterAccess(50, TimeUnit.MINUTES)
-            .maximumSize(1000)
-            .build(new CacheLoader<>() {
+    private static final long REPLY_LOOKUP_TIMEOUT = 500;
 
-                @NotNull
-                public String load(@NotNull Long userId) {
-                    return getUserPhotoAsync(userId).join();
-                }
+    private final KeyedExecutor updateExecutor = new KeyedExecutor(
+            Executors.newVirtualThreadPerTaskExecutor(),
+            throwable -> this.logger.warn("Failed to handle telegram update", throwable)
+    );
 
-            });
+    private final Debouncer editDebouncer = new Debouncer("FlectoneBot-Telegram-Edit");
 
     private final FileFacade fileFacade;
-    private final Provider<TelegramBot> telegramBotProvider;
+    private final BotReadiness botReadiness;
     private final MessageSender discordMessageSender;
-    private final SystemVariableResolver systemVariableResolver;
+    private final AvatarCache avatarCache;
+    private final TemplateCompiler templateCompiler;
+    private final MessageMappingRepository messageMappingRepository;
+    private final RelayMetrics relayMetrics;
+    private final Tracer tracer;
     private final Logger logger;
 
     public Integration.Telegram config() {
         return fileFacade.integration().telegram();
     }
 
+    public void shutdown() {
+        updateExecutor.shutdown();
+    }
+
     @Override
-    public void consume(Update update) {
-        if (!update.hasMessage()) return;
+    public void consume(List<Update> updates) {
+        // updates of one chat keep their order, different chats do not wait for each other
+        // polling starts together with discord, so the first updates wait until discord can take them
+        updates.forEach(update -> {
+            // the trace starts before the queue, so waiting in it is part of the relay time
+            RelayTrace trace = startTrace(update);
+
+            updateExecutor.execute(getUpdateKey(update), () -> botReadiness.get(Platform.DISCORD)
+                    .handle((ignored, throwable) -> throwable == null)
+                    .thenCompose(ready -> ready ? consume(update, trace) : CompletableFuture.completedFuture(null))
+            );
+        });
+    }
 
-        Message message = update.getMessage();
+    private CompletableFuture<Void> consume(Update update, RelayTrace trace) {
+        if (update.hasMessage()) return relay(update.getMessage(), trace);
+        if (update.hasEditedMessage()) return edit(update.getEditedMessage());
 
-        String chatId = getChatId(message);
+        return CompletableFuture.completedFuture(null);
+    }
 
+    // completes once the message is handed to the discord queues, the next update of the chat waits only for that
+    private CompletableFuture<Void> relay(Message message, RelayTrace trace) {
         User author = message.getFrom();
-        if (author == null) return;
+        if (author == null) return CompletableFuture.completedFuture(null);
+
+        relayMetrics.received(Platform.TELEGRAM);
 
-        logger.info("TELEGRAM chat_id={}, author_id={}, message_id={}", chatId, author.getId(), message.getMessageId());
+        long chatId = message.getChatId();
+        int threadId = getThreadId(message);
 
-        String discordChannelId = config().channels().get(chatId);
-        if (discordChannelId == null) return;
+        // one snapshot for the whole update, a reload in between cannot mix two configurations
+        FileSnapshot snapshot = fileFacade.snapshot();
+        Integration.Discord discord = snapshot.files().integration().discord();
 
-        String text = message.getText();
-        if (text == null) return;
+        List<DiscordTarget> targets = snapshot.routes().fromTelegram(chatId, threadId);
+        relayMetrics.routed(Platform.TELEGRAM, trace.getReceivedAt(), targets.size());
+        if (targets.isEmpty()) return CompletableFuture.completedFuture(null);
 
-        String chat = message.getChat().getTitle();
-        if (chat == null) return;
+        trace.mark(RelayTrace.Stage.ROUTE);
 
-        Pair<String, String> reply = null;
-        if (isRealReply(message)) {
-            Message replied = message.getReplyToMessage();
-            User user = replied.getFrom();
-            if (user != null) {
-                reply = Pair.of(user.getUserName(), replied.getText());
+        // unbridged chats are not logged, busy chats can be sampled
+        if (tracer.isLogged(trace)) {
+            logger.info("TELEGRAM trace={}, chat_id={}, thread_id={}, author_id={}, message_id={}", trace.getIdString(), chatId, threadId, author.getId(), message.getMessageId());
+        }
+
+        if (message.getText() == null || message.getChat().getTitle() == null) return CompletableFuture.completedFuture(null);
+
+        CompletableFuture<List<MessageKey>> replyTargets = hasNativeReply(discord, message)
+                ? findReplyTargets(message.getReplyToMessage())
+                : CompletableFuture.completedFuture(List.of());
+
+        Map<String, String> placeholders = createPlaceholders(message, author, avatarCache.getNow(author.getId(), ""));
+
+        // every target renders the same text, so each variant is formatted once and shared
+        UnaryOperator<String> textReplyString = relayMetrics.rendering(Platform.TELEGRAM, createFormatter(placeholders, formatReplyForDiscord(discord, message)));
+        UnaryOperator<String> nativeReplyString = relayMetrics.rendering(Platform.TELEGRAM, createFormatter(placeholders, ""));
+
+        MessageKey source = new MessageKey(Platform.TELEGRAM, String.valueOf(chatId), message.getMessageId());
+        String sender = getSender(author);
+
+        trace.mark(RelayTrace.Stage.RENDER);
+        trace.expect(targets.size());
+
+        return replyTargets.thenAccept(replyMessages -> {
+            for (DiscordTarget target : targets) {
+                // the reply is native only in the channels that have the relayed counterpart
+                Long replyTo = findReplyTo(replyMessages, String.valueOf(target.route()));
+                UnaryOperator<String> discordString = replyTo != null ? nativeReplyString : textReplyString;
+
+                long dispatchedAt = System.nanoTime();
+
+                discordMessageSender.sendMessage(sender, target, discord, discordString, ComponentSkeleton.EMPTY, replyTo, trace)
+                        .subscribe(
+                                sentMessage -> {
+                                    relayMetrics.acknowledged(Platform.TELEGRAM, trace.getReceivedAt(), dispatchedAt, true);
+                                    tracer.acknowledge(trace, true);
+                                    messageMappingRepository.record(source, new MessageKey(Platform.DISCORD, sentMessage.channelId().asString(), sentMessage.id().asLong()));
+                                },
+                                throwable -> {
+                                    logger.warn("Failed to relay telegram message", throwable);
+                                    relayMetrics.acknowledged(Platform.TELEGRAM, trace.getReceivedAt(), dispatchedAt, false);
+                                    tracer.acknowledge(trace, false);
+                                }
+                        );
             }
+        });
+    }
+
+    // an edit only changes the text, so it is not counted or traced as a new message and never loads an avatar
+    private CompletableFuture<Void> edit(Message message) {
+        User author = message.getFrom();
+        if (author == null || message.getText() == null || message.getChat().getTitle() == null) return CompletableFuture.completedFuture(null);
+
+        FileSnapshot snapshot = fileFacade.snapshot();
+        Integration.Discord discord = snapshot.files().integration().discord();
+
+        // a batched discord message holds several telegram messages, one edit would overwrite the others
+        if (Boolean.TRUE.equals(discord.batch().enable())) return CompletableFuture.completedFuture(null);
+
+        List<DiscordTarget> targets = snapshot.routes().fromTelegram(message.getChatId(), getThreadId(message));
+        if (targets.isEmpty()) return CompletableFuture.completedFuture(null);
+
+        Map<String, String> placeholders = createPlaceholders(message, author, avatarCache.getIfPresent(author.getId(), ""));
+        UnaryOperator<String> textReplyString = createFormatter(placeholders, formatReplyForDiscord(discord, message));
+        UnaryOperator<String> nativeReplyString = createFormatter(placeholders, "");
+
+        MessageKey source = new MessageKey(Platform.TELEGRAM, String.valueOf(message.getChatId()), message.getMessageId());
+        boolean nativeReply = hasNativeReply(discord, message);
+        long editDelay = snapshot.files().config().mapping().editDelay();
+
+        for (DiscordTarget target : targets) {
+            String targetChat = String.valueOf(target.route());
+
+            // only the last of several quick edits reaches discord, the lookups run once for it
+            editDebouncer.debounce(Pair.of(source, target), editDelay, () -> messageMappingRepository.findCounterpart(source, Platform.DISCORD, targetChat)
+                    .thenAccept(counterpart -> counterpart.ifPresent(discordMessage -> (nativeReply ? findReplyTargets(message.getReplyToMessage()) : CompletableFuture.completedFuture(List.<MessageKey>of()))
+                            .thenAccept(replyMessages -> {
+                                UnaryOperator<String> discordString = findReplyTo(replyMessages, targetChat) != null ? nativeReplyString : textReplyString;
+
+                                discordMessageSender.editMessage(target, discordMessage.messageId(), discord, discordString)
+                                        .subscribe(ignored -> {}, throwable -> logger.warn("Failed to edit discord message", throwable));
+                            })
+                    ))
+            );
         }
 
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private Map<String, String> createPlaceholders(Message message, User author, String avatar) {
         String userName = StringUtils.defaultString(author.getUserName());
-        String firstName = author.getFirstName();
-        String lastName = StringUtils.defaultString(author.getLastName());
-        String avatar = getUserPhoto(author);
-        String formatReply = formatReplyForDiscord(reply);
 
-        discordMessageSender.sendMessage(userName.isEmpty() ? firstName : userName, discordChannelId, fileFacade.integration().discord(), s -> StringUtils.replaceEach(
-                s,
-                new String[]{"<name>", "<user_name>", "<first_name>", "<last_name>", "<chat>", "<message>", "<avatar>", "<reply>"},
-                new String[]{userName, userName, firstName, lastName, StringUtils.defaultString(chat), text, avatar, formatReply}
-        ), List.of());
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("name", userName);
+        placeholders.put("user_name", userName);
+        placeholders.put("first_name", author.getFirstName());
+        placeholders.put("last_name", StringUtils.defaultString(author.getLastName()));
+        placeholders.put("chat", message.getChat().getTitle());
+        placeholders.put("message", message.getText());
+        placeholders.put("avatar", StringUtils.defaultString(avatar));
+        return placeholders;
     }
 
-    private String formatReplyForDiscord(Pair<String, String> reply) {
-        if (reply == null) return "";
+    private UnaryOperator<String> createFormatter(Map<String, String> placeholders, String reply) {
+        Map<String, String> replyPlaceholders = new HashMap<>(placeholders);
+        replyPlaceholders.put("reply", reply);
+        return templateCompiler.formatter(replyPlaceholders);
+    }
 
-        return StringUtils.replaceEach(
-                fileFacade.integration().discord().formatReply(),
-                new String[]{"<reply_user>", "<reply_message>"},
-                new String[]{StringUtils.defaultString(reply.getLeft()), StringUtils.defaultString(reply.getRight())}
-        );
+    // webhooks cannot reply, so only a plain bot message can use the relayed counterpart
+    private boolean hasNativeReply(Integration.Discord discord, Message message) {
+        return isRealReply(message) && StringUtils.isEmpty(discord.webhookAvatar());
     }
 
-    private String getUserPhoto(User user) {
-        try {
-            return userPhotos.get(user.getId());
-        } catch (Exception e) {
-            return "";
-        }
+    private String getSender(User author) {
+        String userName = StringUtils.defaultString(author.getUserName());
+        return userName.isEmpty() ? author.getFirstName() : userName;
     }
 
-    private CompletableFuture<String> getUserPhotoAsync(Long userId) {
-        CompletableFuture<String> future = new CompletableFuture<>();
-
-        try {
-            telegramBotProvider.get().getTelegramClient().executeAsync(
-                    GetUserProfilePhotos.builder()
-                            .userId(userId)
-                            .limit(1)
-                            .build()
-            ).thenAcceptAsync(userProfilePhotos -> {
-                if (userProfilePhotos.getPhotos() == null || userProfilePhotos.getPhotos().isEmpty()) {
-                    future.complete("");
-                    return;
-                }
-
-                PhotoSize photoSize = userProfilePhotos.getPhotos().getFirst().getLast();
-
-                try {
-                    telegramBotProvider.get().getTelegramClient().executeAsync(
-                            GetFile.builder().fileId(photoSize.getFileId()).build()
-                    ).thenAcceptAsync(file -> future.complete(getPhotoUrl(file)));
-                } catch (TelegramApiException e) {
-                    future.complete("");
-                }
-
-            });
-        } catch (TelegramApiException e) {
-            future.complete(null);
+    private int getThreadId(Message message) {
+        return message.isTopicMessage() ? message.getMessageThreadId() : TelegramTarget.NO_THREAD;
+    }
+
+    private CompletableFuture<List<MessageKey>> findReplyTargets(Message replied) {
+        MessageKey key = new MessageKey(Platform.TELEGRAM, replied.getChatId().toString(), replied.getMessageId());
+
+        // a slow lookup only delays this chat, without a counterpart the reply is sent as text
+        return messageMappingRepository.findCounterparts(key, Platform.DISCORD)
+                .completeOnTimeout(List.of(), REPLY_LOOKUP_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    private @Nullable Long findReplyTo(List<MessageKey> replyTargets, String chat) {
+        for (MessageKey replyTarget : replyTargets) {
+            if (replyTarget.chat().equals(chat)) return replyTarget.messageId();
         }
 
-        return future;
+        return null;
+    }
+
+    private String formatReplyForDiscord(Integration.Discord discord, Message message) {
+        if (!isRealReply(message)) return "";
+
+        Message replied = message.getReplyToMessage();
+
+        User user = replied.getFrom();
+        if (user == null) return "";
+
+        return templateCompiler.format(discord.formatReply(), Map.of(
+                "reply_user", StringUtils.defaultString(user.getUserName()),
+                "reply_message", StringUtils.defaultString(replied.getText())
+        ));
     }
 
     private boolean isRealReply(Message message) {
@@ -182,21 +294,21 @@ public class MessageListener implements LongPollingSingleThreadUpdateConsumer {
         return user != null && user.getIsBot();
     }
 
-    private String getPhotoUrl(File file) {
-        String token = systemVariableResolver.substituteEnvVars(config().token());
-        return "https://api.telegram.org/file/bot" + token + "/" + file.getFilePath();
+    private RelayTrace startTrace(Update update) {
+        Message message = update.hasMessage() ? update.getMessage() : update.getEditedMessage();
+        return tracer.start(Platform.TELEGRAM, message == null ? "" : String.valueOf(message.getChatId()));
     }
 
-    public String getChatId(Message message) {
-        return message.getChatId() + (message.isTopicMessage() ? "_" + message.getMessageThreadId() : "");
+    private Object getUpdateKey(Update update) {
+        if (update.hasMessage()) return getUpdateKey(update.getMessage());
+        if (update.hasEditedMessage()) return getUpdateKey(update.getEditedMessage());
+
+        return "";
     }
 
-    public void deleteMessage(String chatId, Integer messageId) {
-        telegramBotProvider.get().executeMethod(DeleteMessage.builder()
-                .chatId(chatId)
-                .messageId(messageId)
-                .build()
-        );
+    // topics of one chat are independent, so they do not wait for each other
+    private Object getUpdateKey(Message message) {
+        return Pair.of(message.getChatId(), getThreadId(message));
     }
 
 }
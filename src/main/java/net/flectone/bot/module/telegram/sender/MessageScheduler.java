@@ -0,0 +1,277 @@
+package net.flectone.bot.module.telegram.sender;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import net.flectone.bot.config.Integration;
+import net.flectone.bot.module.telegram.TelegramBot;
+import net.flectone.bot.util.file.FileFacade;
+import net.flectone.bot.util.limiter.TokenBucket;
+import net.flectone.bot.util.metrics.LatencyHistogram;
+import net.flectone.bot.util.trace.RelayTrace;
+import org.apache.logging.log4j.Logger;
+import org.jspecify.annotations.Nullable;
+import org.telegram.telegrambots.meta.api.methods.botapimethods.BotApiMethod;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class MessageScheduler {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "FlectoneBot-Telegram-Scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<Long, ChatQueue> chats = new ConcurrentHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+
+    // time of the api request itself, without waiting in the queue or for the rate limit
+    @Getter
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+
+    private final FileFacade fileFacade;
+    private final Provider<TelegramBot> telegramBotProvider;
+    private final Logger logger;
+
+    private Integration.Telegram.Dispatch globalLimits;
+    private TokenBucket globalBucket;
+
+    public Integration.Telegram.Dispatch config() {
+        return fileFacade.integration().telegram().dispatch();
+    }
+
+    // methods for one chat are executed in order, honouring the chat, global and retry_after limits
+    public <T extends Serializable> CompletableFuture<T> schedule(long chatId, BotApiMethod<T> method) {
+        return schedule(chatId, method, null);
+    }
+
+    public <T extends Serializable> CompletableFuture<T> schedule(long chatId, BotApiMethod<T> method, @Nullable RelayTrace trace) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        ChatQueue chatQueue = chats.computeIfAbsent(chatId, id -> new ChatQueue());
+        if (!chatQueue.offer(new Task<>(method, result, trace))) {
+            dropped.incrementAndGet();
+            logger.warn("Telegram queue for {} is full, message dropped", chatId);
+            result.cancel(false);
+        }
+
+        return result;
+    }
+
+    public int getQueued() {
+        return chats.values().stream().mapToInt(ChatQueue::size).sum();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getRetried() {
+        return retried.get();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+
+        RejectedExecutionException exception = new RejectedExecutionException("Telegram scheduler is shut down");
+        chats.values().forEach(chatQueue -> chatQueue.close(exception));
+    }
+
+    // a reloaded dispatch config replaces the bucket, the next reservation uses the new limits
+    private synchronized TokenBucket globalBucket() {
+        Integration.Telegram.Dispatch config = config();
+        if (globalBucket == null || !config.equals(globalLimits)) {
+            globalLimits = config;
+            globalBucket = new TokenBucket(config.globalBucketSize(), Duration.ofMillis(config.globalBucketPeriod()));
+        }
+
+        return globalBucket;
+    }
+
+    private static class Task<T extends Serializable> {
+
+        private final BotApiMethod<T> method;
+        private final CompletableFuture<T> result;
+        private final RelayTrace trace;
+        private int attempts;
+
+        private Task(BotApiMethod<T> method, CompletableFuture<T> result, RelayTrace trace) {
+            this.method = method;
+            this.result = result;
+            this.trace = trace;
+        }
+
+    }
+
+    private class ChatQueue {
+
+        private final Queue<Task<?>> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        private Integration.Telegram.Dispatch limits;
+        private TokenBucket bucket;
+
+        private volatile Task<?> current;
+
+        // the limit is read on every offer, so a reloaded queue_size applies right away
+        private boolean offer(Task<?> task) {
+            if (size.incrementAndGet() > Math.max(1, config().queueSize())) {
+                size.decrementAndGet();
+                return false;
+            }
+
+            queue.offer(task);
+            drain();
+            return true;
+        }
+
+        private int size() {
+            return size.get();
+        }
+
+        private void drain() {
+            if (!running.compareAndSet(false, true)) return;
+
+            Task<?> task = queue.poll();
+            if (task == null) {
+                running.set(false);
+
+                // something could be added between poll and set
+                if (!queue.isEmpty()) {
+                    drain();
+                }
+
+                return;
+            }
+
+            size.decrementAndGet();
+            current = task;
+
+            schedule(task);
+        }
+
+        private synchronized TokenBucket bucket() {
+            Integration.Telegram.Dispatch config = config();
+            if (bucket == null || !config.equals(limits)) {
+                limits = config;
+                bucket = new TokenBucket(config.chatBucketSize(), Duration.ofMillis(config.chatBucketPeriod()));
+            }
+
+            return bucket;
+        }
+
+        private void schedule(Task<?> task) {
+            // chat limit first, so a waiting chat does not hold global tokens
+            delay(bucket().reserve(), () -> delay(globalBucket().reserve(), () -> execute(task)));
+        }
+
+        private void delay(Duration wait, Runnable action) {
+            try {
+                executor.schedule(action, wait.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // the scheduler is shut down, nothing of this chat will be sent anymore
+                close(e);
+            }
+        }
+
+        private <T extends Serializable> void execute(Task<T> task) {
+            if (task.trace != null) {
+                task.trace.mark(RelayTrace.Stage.DISPATCH);
+            }
+
+            long start = System.nanoTime();
+
+            CompletableFuture<T> future;
+            try {
+                future = telegramBotProvider.get().getTelegramClient().executeAsync(task.method);
+            } catch (Throwable throwable) {
+                // not only api errors, a missing client must not stall the chat either
+                future = CompletableFuture.failedFuture(throwable);
+            }
+
+            future.whenComplete((value, throwable) -> {
+                requestLatency.recordSince(start);
+
+                Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+
+                try {
+                    if (retry(task, cause)) return;
+                } catch (Throwable retryThrowable) {
+                    finish(task, null, retryThrowable);
+                    return;
+                }
+
+                finish(task, value, cause);
+            });
+        }
+
+        private boolean retry(Task<?> task, Throwable cause) {
+            if (!(cause instanceof TelegramApiRequestException requestException)
+                    || requestException.getErrorCode() == null
+                    || requestException.getErrorCode() != TOO_MANY_REQUESTS
+                    || task.attempts >= config().retries()) return false;
+
+            task.attempts++;
+            retried.incrementAndGet();
+
+            Integer retryAfter = requestException.getParameters() != null ? requestException.getParameters().getRetryAfter() : null;
+            Duration pause = Duration.ofSeconds(retryAfter != null ? retryAfter : 1);
+
+            // telegram does not say whether the chat or the global limit was hit, so both wait
+            bucket().pause(pause);
+            globalBucket().pause(pause);
+
+            schedule(task);
+            return true;
+        }
+
+        // the queue moves on whatever happened to the task
+        private <T extends Serializable> void finish(Task<T> task, T value, Throwable cause) {
+            if (cause != null) {
+                logger.warn("Failed to execute telegram method {}", task.method.getMethod(), cause);
+                task.result.completeExceptionally(cause);
+            } else {
+                task.result.complete(value);
+            }
+
+            current = null;
+            running.set(false);
+            drain();
+        }
+
+        // fails the running and the queued tasks, their callers must not wait forever
+        private void close(RejectedExecutionException exception) {
+            Task<?> task = current;
+            if (task != null) {
+                task.result.completeExceptionally(exception);
+            }
+
+            for (Task<?> queued = queue.poll(); queued != null; queued = queue.poll()) {
+                size.decrementAndGet();
+                queued.result.completeExceptionally(exception);
+            }
+
+            current = null;
+            running.set(false);
+        }
+
+    }
+
+}
@@ -3,11 +3,19 @@ package net.flectone.bot.module.telegram.sender;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import lombok.RequiredArgsConstructor;
-import net.flectone.bot.module.telegram.TelegramBot;
+import net.flectone.bot.model.route.TelegramTarget;
 import net.flectone.bot.util.file.FileFacade;
+import net.flectone.bot.util.trace.RelayTrace;
 import org.apache.commons.lang3.StringUtils;
+import org.jspecify.annotations.Nullable;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.ReplyParameters;
+import org.telegram.telegrambots.meta.api.objects.message.Message;
 
+import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.UnaryOperator;
 
 @Singleton
@@ -15,22 +23,41 @@ import java.util.function.UnaryOperator;
 public class MessageSender {
 
     private final FileFacade fileFacade;
-    private final TelegramBot telegramBot;
+    private final MessageScheduler messageScheduler;
 
-    public void sendMessage(String chat, UnaryOperator<String> telegramString) {
+    public CompletableFuture<Message> sendMessage(TelegramTarget target, UnaryOperator<String> telegramString) {
+        return sendMessage(target, telegramString, null);
+    }
+
+    public CompletableFuture<Message> sendMessage(TelegramTarget target, UnaryOperator<String> telegramString, @Nullable Integer replyTo) {
+        return sendMessage(target, telegramString, replyTo, null);
+    }
+
+    public CompletableFuture<Message> sendMessage(TelegramTarget target,
+                                                  UnaryOperator<String> telegramString,
+                                                  @Nullable Integer replyTo,
+                                                  @Nullable RelayTrace trace) {
         String message = fileFacade.integration().telegram().message();
-        if (StringUtils.isEmpty(message)) return;
+        if (StringUtils.isEmpty(message)) return CompletableFuture.completedFuture(null);
 
         message = telegramString.apply(message);
-        if (StringUtils.isEmpty(message)) return;
+        if (StringUtils.isEmpty(message)) return CompletableFuture.completedFuture(null);
 
         SendMessage.SendMessageBuilder<?, ?> sendMessageBuilder = SendMessage.builder()
-                .chatId(chat)
+                .chatId(target.chat())
                 .text(message);
 
-        if (chat.contains("_")) {
+        if (target.hasThread()) {
             sendMessageBuilder
-                    .messageThreadId(Integer.parseInt(chat.split("_")[1]));
+                    .messageThreadId(target.threadId());
+        }
+
+        if (replyTo != null) {
+            sendMessageBuilder.replyParameters(ReplyParameters.builder()
+                    .messageId(replyTo)
+                    .allowSendingWithoutReply(true)
+                    .build()
+            );
         }
 
         SendMessage sendMessage = sendMessageBuilder.build();
@@ -41,7 +68,38 @@ public class MessageSender {
             case HTML -> sendMessage.enableHtml(true);
         }
 
-        telegramBot.executeMethod(sendMessage);
+        return messageScheduler.schedule(target.chatId(), sendMessage, trace);
+    }
+
+    // edits and deletes go through the chat queue, so they can never overtake the message itself
+    public CompletableFuture<Serializable> editMessage(String chatId, int messageId, UnaryOperator<String> telegramString) {
+        String message = fileFacade.integration().telegram().message();
+        if (StringUtils.isEmpty(message)) return CompletableFuture.completedFuture(null);
+
+        message = telegramString.apply(message);
+        if (StringUtils.isEmpty(message)) return CompletableFuture.completedFuture(null);
+
+        EditMessageText editMessageText = EditMessageText.builder()
+                .chatId(chatId)
+                .messageId(messageId)
+                .text(message)
+                .build();
+
+        switch (fileFacade.integration().telegram().parseMode()) {
+            case MARKDOWN -> editMessageText.enableMarkdown(true);
+            case MARKDOWN_V2 -> editMessageText.enableMarkdownV2(true);
+            case HTML -> editMessageText.enableHtml(true);
+        }
+
+        return messageScheduler.schedule(Long.parseLong(chatId), editMessageText);
+    }
+
+    public CompletableFuture<Boolean> deleteMessage(String chatId, int messageId) {
+        return messageScheduler.schedule(Long.parseLong(chatId), DeleteMessage.builder()
+                .chatId(chatId)
+                .messageId(messageId)
+                .build()
+        );
     }
 
 }
@@ -0,0 +1,137 @@
+package net.flectone.bot.processing;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import lombok.RequiredArgsConstructor;
+import net.flectone.bot.config.Integration;
+import net.flectone.bot.model.template.Template;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class TemplateCompiler {
+
+    private volatile Map<String, Template> templates = Map.of();
+
+    public void compileAll(Integration integration) {
+        Map<String, Template> compiled = new HashMap<>();
+
+        Integration.Discord discord = integration.discord();
+        if (discord != null) {
+            compile(compiled, discord.formatReply());
+            compileEmbed(compiled, discord);
+
+            Integration.Discord.Messages messages = discord.messages();
+            if (messages != null) {
+                compile(compiled, messages.noPermission());
+                compile(compiled, messages.unknownCommand());
+                compile(compiled, messages.commandError());
+                compile(compiled, messages.ticketCloseNoPermission());
+                compile(compiled, messages.ticketClosed());
+                compile(compiled, messages.notAThread());
+            }
+
+            Integration.Discord.Ticket ticket = discord.ticket();
+            if (ticket != null && ticket.modals() != null) {
+                ticket.modals().values().forEach(modal -> {
+                    compile(compiled, modal.name());
+                    compileEmbed(compiled, modal);
+                    compileEmbed(compiled, modal.createMessage());
+                });
+            }
+
+            if (discord.commands() != null) {
+                discord.commands().forEach(command -> {
+                    compileEmbed(compiled, command);
+
+                    if (command.options() != null) {
+                        command.options().forEach(option -> compileEmbed(compiled, option));
+                    }
+                });
+            }
+        }
+
+        Integration.Telegram telegram = integration.telegram();
+        if (telegram != null) {
+            compile(compiled, telegram.formatReply());
+            compile(compiled, telegram.message());
+        }
+
+        templates = Map.copyOf(compiled);
+    }
+
+    public Template compile(String text) {
+        Template template = templates.get(text);
+        if (template != null) return template;
+
+        // not a configured string (e.g. user input), so it is not worth caching
+        return Template.compile(text);
+    }
+
+    public String format(String text, Map<String, String> placeholders) {
+        if (StringUtils.isEmpty(text)) return text;
+
+        return compile(text).render(placeholders);
+    }
+
+    // every configured string is rendered once, however many targets the message is sent to
+    public UnaryOperator<String> formatter(Map<String, String> placeholders) {
+        Map<String, String> rendered = new ConcurrentHashMap<>();
+
+        return text -> {
+            if (StringUtils.isEmpty(text)) return text;
+
+            return rendered.computeIfAbsent(text, key -> compile(key).render(placeholders));
+        };
+    }
+
+    private void compileEmbed(Map<String, Template> compiled, Integration.WithEmbed withEmbed) {
+        if (withEmbed == null) return;
+
+        compile(compiled, withEmbed.message());
+        compile(compiled, withEmbed.webhookAvatar());
+
+        Integration.Discord.Embed embed = withEmbed.embed();
+        if (embed == null) return;
+
+        compile(compiled, embed.title());
+        compile(compiled, embed.url());
+        compile(compiled, embed.description());
+        compile(compiled, embed.thumbnail());
+        compile(compiled, embed.image());
+
+        Integration.Discord.Embed.Author author = embed.author();
+        if (author != null) {
+            compile(compiled, author.name());
+            compile(compiled, author.url());
+            compile(compiled, author.iconUrl());
+        }
+
+        Integration.Discord.Embed.Footer footer = embed.footer();
+        if (footer != null) {
+            compile(compiled, footer.text());
+            compile(compiled, footer.iconUrl());
+        }
+
+        List<Integration.Discord.Embed.Field> fields = embed.fields();
+        if (fields != null) {
+            fields.forEach(field -> {
+                compile(compiled, field.name());
+                compile(compiled, field.value());
+            });
+        }
+    }
+
+    private void compile(Map<String, Template> compiled, String text) {
+        if (StringUtils.isEmpty(text)) return;
+
+        compiled.computeIfAbsent(text, Template::compile);
+    }
+
+}
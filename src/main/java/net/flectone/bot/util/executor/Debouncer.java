@@ -0,0 +1,63 @@
+package net.flectone.bot.util.executor;
+
+import java.util.Map;
+import java.util.concurrent.*;
+
+// only the last task of a key runs, once no new task for that key came in during the delay
+public class Debouncer {
+
+    private final Map<Object, Pending> pending = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService executor;
+
+    public Debouncer(String name) {
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void debounce(Object key, long delay, Runnable task) {
+        // the entry exists before its task is scheduled, so even a task that runs at once removes exactly this entry
+        Pending next = new Pending();
+
+        pending.compute(key, (k, previous) -> {
+            if (previous != null) {
+                previous.cancel();
+            }
+
+            next.future = executor.schedule(() -> {
+                pending.remove(k, next);
+                task.run();
+            }, delay, TimeUnit.MILLISECONDS);
+
+            return next;
+        });
+    }
+
+    public void cancel(Object key) {
+        Pending previous = pending.remove(key);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    private static class Pending {
+
+        private volatile ScheduledFuture<?> future;
+
+        private void cancel() {
+            ScheduledFuture<?> scheduled = future;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+
+    }
+
+}
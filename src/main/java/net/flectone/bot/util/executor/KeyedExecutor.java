@@ -0,0 +1,54 @@
+package net.flectone.bot.util.executor;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// tasks with the same key run one after another, tasks with different keys run in parallel
+public class KeyedExecutor {
+
+    private final Map<Object, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor;
+    private final Consumer<Throwable> errorHandler;
+
+    public KeyedExecutor(ExecutorService executor, Consumer<Throwable> errorHandler) {
+        this.executor = executor;
+        this.errorHandler = errorHandler;
+    }
+
+    // the next task of the key starts when the returned stage completes, so a task can wait without holding a thread
+    public void execute(Object key, Supplier<? extends CompletionStage<?>> task) {
+        CompletableFuture<Void> next = tails.compute(key, (k, tail) -> {
+            CompletableFuture<Void> previous = tail == null ? CompletableFuture.completedFuture(null) : tail;
+
+            return previous
+                    .thenComposeAsync(ignored -> task.get(), executor)
+                    .handle((ignored, throwable) -> {
+                        if (throwable != null) {
+                            errorHandler.accept(throwable);
+                        }
+
+                        return null;
+                    });
+        });
+
+        // the last task of a key cleans up after itself, so idle keys do not stay in the map
+        // attached after compute, a task that is already done would otherwise remove its key inside compute
+        next.whenComplete((ignored, throwable) -> tails.remove(key, next));
+    }
+
+    public int size() {
+        return tails.size();
+    }
+
+    // tasks that were not started yet complete through the error handler
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+}
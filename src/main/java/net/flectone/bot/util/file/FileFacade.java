@@ -9,26 +9,38 @@ import net.flectone.bot.BuildConfig;
 import net.flectone.bot.config.Config;
 import net.flectone.bot.config.Integration;
 import net.flectone.bot.model.file.FilePack;
+import net.flectone.bot.model.file.FileSnapshot;
+import net.flectone.bot.processing.TemplateCompiler;
 import net.flectone.bot.util.comparator.VersionComparator;
 import net.flectone.bot.util.creator.BackupCreator;
+import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import java.util.function.UnaryOperator;
 
 @Singleton
 @RequiredArgsConstructor(onConstructor = @__(@Inject))
 public class FileFacade {
 
+    private final List<BiConsumer<FilePack, FilePack>> updateListeners = new CopyOnWriteArrayList<>();
+
     private final FileLoader fileLoader;
     private final FileWriter fileWriter;
     private final FileMigrator fileMigrator;
     private final FilePathProvider filePathProvider;
     private final BackupCreator backupCreator;
     private final VersionComparator versionComparator;
+    private final TemplateCompiler templateCompiler;
+    private final Logger logger;
+
+    private final AtomicReference<FileSnapshot> snapshot = new AtomicReference<>();
 
     @Getter
     private String preInitVersion;
-    private FilePack files;
 
 
     public void reload() throws IOException {
@@ -36,7 +48,7 @@ public class FileFacade {
 
         // this is to check FlectonePulse version
         // mb in the future we should put version in a separate file, but I think it's not so important
-        preInitVersion = fileLoader.loadAndMergeConfig(files).version();
+        preInitVersion = fileLoader.loadAndMergeConfig(files()).version();
         boolean versionChanged = !preInitVersion.equals(BuildConfig.PROJECT_VERSION);
 
         // backup if version changed
@@ -60,24 +72,65 @@ public class FileFacade {
         }
     }
 
+    // one volatile read, the returned snapshot never changes
+    public FileSnapshot snapshot() {
+        return snapshot.get();
+    }
+
     public Config config() {
-        return files.config();
+        return snapshot.get().files().config();
     }
 
     public Integration integration() {
-        return files.integration();
+        return snapshot.get().files().integration();
     }
 
     public void saveFiles() {
-        fileWriter.save(files, false);
+        fileWriter.save(files(), false);
+    }
+
+    public synchronized void updateFiles() {
+        FilePack previousFiles = files();
+        publish(previousFiles, fileLoader.loadFiles(previousFiles));
+    }
+
+    // the files on disk are the only source, so removed entries disappear instead of being merged with the current ones
+    public synchronized void reloadFiles() {
+        publish(files(), fileLoader.loadFiles(null));
+    }
+
+    // writers are serialized, so an update is never lost between reading and replacing the files
+    public synchronized void updateFilePack(UnaryOperator<FilePack> filePackOperator) {
+        FilePack previousFiles = files();
+        publish(previousFiles, filePackOperator.apply(previousFiles));
+    }
+
+    public void addUpdateListener(Runnable listener) {
+        updateListeners.add((previousFiles, currentFiles) -> listener.run());
+    }
+
+    // receives the previous and the current files, previous is null on the first load
+    public void addChangeListener(BiConsumer<FilePack, FilePack> listener) {
+        updateListeners.add(listener);
     }
 
-    public void updateFiles() {
-        files = fileLoader.loadFiles(files);
+    private FilePack files() {
+        FileSnapshot currentSnapshot = snapshot.get();
+        return currentSnapshot == null ? null : currentSnapshot.files();
     }
 
-    public void updateFilePack(UnaryOperator<FilePack> filePackOperator) {
-        files = filePackOperator.apply(files);
+    private void publish(FilePack previousFiles, FilePack files) {
+        templateCompiler.compileAll(files.integration());
+        snapshot.set(FileSnapshot.of(files));
+
+        // one failing listener must not keep the others on the old files
+        updateListeners.forEach(listener -> {
+            try {
+                listener.accept(previousFiles, files);
+            } catch (Exception e) {
+                logger.error("Failed to apply reloaded files", e);
+            }
+        });
     }
 
     private void backupFiles(String preInitVersion) {
@@ -90,6 +143,7 @@ public class FileFacade {
     }
 
     private void migrateFiles(String preInitVersion) {
-        files = files.withConfig(files.config().withVersion(BuildConfig.PROJECT_VERSION));
+        FilePack files = files();
+        snapshot.set(FileSnapshot.of(files.withConfig(files.config().withVersion(BuildConfig.PROJECT_VERSION))));
     }
 }
@@ -0,0 +1,94 @@
+package net.flectone.bot.util.file;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import lombok.RequiredArgsConstructor;
+import net.flectone.bot.util.constant.FilePath;
+import net.flectone.bot.util.executor.Debouncer;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class FileWatcher {
+
+    // editors save a file in several writes, the reload waits until they are done
+    private static final long RELOAD_DELAY = 500;
+
+    private static final Set<String> WATCHED_FILES = Arrays.stream(FilePath.values())
+            .map(FilePath::getPath)
+            .collect(Collectors.toUnmodifiableSet());
+
+    private final Debouncer reloadDebouncer = new Debouncer("FlectoneBot-Reload");
+
+    private final FileFacade fileFacade;
+    private final @Named("projectPath") Path projectPath;
+    private final Logger logger;
+
+    private WatchService watchService;
+    private Thread thread;
+
+    public void start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            projectPath.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.warn("Failed to watch {}, hot reload is disabled", projectPath, e);
+            return;
+        }
+
+        thread = new Thread(this::watch, "FlectoneBot-FileWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        if (thread == null) return;
+
+        thread.interrupt();
+
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn(e);
+        }
+    }
+
+    private void watch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey watchKey;
+            try {
+                watchKey = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            boolean changed = watchKey.pollEvents().stream()
+                    .map(WatchEvent::context)
+                    .anyMatch(context -> context instanceof Path path && WATCHED_FILES.contains(path.toString()));
+
+            if (changed) {
+                reloadDebouncer.debounce(projectPath, RELOAD_DELAY, this::reload);
+            }
+
+            if (!watchKey.reset()) return;
+        }
+    }
+
+    private void reload() {
+        try {
+            fileFacade.reloadFiles();
+            logger.info("✔ Files reloaded");
+        } catch (Exception e) {
+            // a broken file keeps the last working configuration
+            logger.warn("Failed to reload files", e);
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+package net.flectone.bot.util.limiter;
+
+import java.time.Duration;
+
+public class TokenBucket {
+
+    private final int capacity;
+    private final long refillNanos;
+
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(int capacity, Duration period) {
+        this.capacity = Math.max(1, capacity);
+        this.refillNanos = Math.max(1, period.toNanos() / this.capacity);
+        this.tokens = this.capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    // takes one token, possibly from the future, and returns how long the caller must wait for it
+    public synchronized Duration reserve() {
+        refill();
+
+        tokens -= 1;
+        if (tokens >= 0) return Duration.ZERO;
+
+        return Duration.ofNanos((long) (-tokens * refillNanos));
+    }
+
+    // empties the bucket until the given delay is over, e.g. after retry_after from the API
+    public synchronized void pause(Duration delay) {
+        refill();
+
+        tokens = Math.min(tokens, 0) - (double) delay.toNanos() / refillNanos;
+    }
+
+    public synchronized boolean isFull() {
+        refill();
+
+        return tokens >= capacity;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+
+        tokens = Math.min(capacity, tokens + (double) (now - lastRefill) / refillNanos);
+        lastRefill = now;
+    }
+
+}
@@ -0,0 +1,50 @@
+package net.flectone.bot.util.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// log buckets like hdr histograms, each one covers twice the range of the previous, from 1 microsecond to about 17 seconds
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 25;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos) / 1000;
+
+        // the smallest bucket that fits, micros <= 2^index
+        int index = micros <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(micros - 1);
+
+        counts[Math.min(index, BUCKETS)].increment();
+        sumNanos.add(Math.max(0, nanos));
+    }
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    int buckets() {
+        return BUCKETS;
+    }
+
+    // upper bound of the bucket in seconds
+    double upperBound(int index) {
+        return (1L << index) / 1_000_000.0;
+    }
+
+    long count(int index) {
+        return counts[index].sum();
+    }
+
+    double sumSeconds() {
+        return sumNanos.sum() / 1_000_000_000.0;
+    }
+
+}
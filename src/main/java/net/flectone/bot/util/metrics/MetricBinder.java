@@ -0,0 +1,37 @@
+package net.flectone.bot.util.metrics;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import lombok.RequiredArgsConstructor;
+import net.flectone.bot.module.discord.sender.MessageDispatcher;
+import net.flectone.bot.module.telegram.cache.AvatarCache;
+import net.flectone.bot.module.telegram.sender.MessageScheduler;
+
+// counters that already exist in other classes, they are only read when metrics are scraped
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class MetricBinder {
+
+    private final MetricRegistry metricRegistry;
+    private final MessageDispatcher messageDispatcher;
+    private final MessageScheduler messageScheduler;
+    private final AvatarCache avatarCache;
+
+    public void bind() {
+        metricRegistry.histogram("flectonebot_request_seconds", "Time of a platform api request in seconds", messageDispatcher.getRequestLatency(), "platform", "discord");
+        metricRegistry.histogram("flectonebot_request_seconds", "Time of a platform api request in seconds", messageScheduler.getRequestLatency(), "platform", "telegram");
+
+        metricRegistry.gauge("flectonebot_dispatch_queued", "Requests waiting in the send queues", messageDispatcher::getQueued, "platform", "discord");
+        metricRegistry.gauge("flectonebot_dispatch_queued", "Requests waiting in the send queues", messageScheduler::getQueued, "platform", "telegram");
+        metricRegistry.counter("flectonebot_dispatch_dropped_total", "Requests dropped because a send queue was full", messageDispatcher::getDropped, "platform", "discord");
+        metricRegistry.counter("flectonebot_dispatch_dropped_total", "Requests dropped because a send queue was full", messageScheduler::getDropped, "platform", "telegram");
+        metricRegistry.counter("flectonebot_dispatch_retried_total", "Requests retried after a 429 response", messageScheduler::getRetried, "platform", "telegram");
+        metricRegistry.counter("flectonebot_dispatch_sent_total", "Requests sent successfully", messageDispatcher::getDispatched, "platform", "discord");
+        metricRegistry.counter("flectonebot_dispatch_failed_total", "Requests that failed after all retries", messageDispatcher::getFailed, "platform", "discord");
+
+        metricRegistry.counter("flectonebot_avatar_cache_hits_total", "Telegram avatars that were ready when a message was relayed", avatarCache::getHits);
+        metricRegistry.counter("flectonebot_avatar_cache_misses_total", "Telegram avatars that were still loading when a message was relayed", avatarCache::getMisses);
+        metricRegistry.gauge("flectonebot_avatar_cache_size", "Telegram avatars in the cache", avatarCache::size);
+    }
+
+}
@@ -0,0 +1,131 @@
+package net.flectone.bot.util.metrics;
+
+import com.google.inject.Singleton;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// metrics are created once and then only updated, writing the prometheus text happens on scrape
+@Singleton
+public class MetricRegistry {
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    // labels are name and value pairs, e.g. "source", "telegram"
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, Type.COUNTER).metrics.computeIfAbsent(labels(labels), key -> new LongAdder());
+    }
+
+    // for totals that are counted by another class, the value is read on scrape
+    public void counter(String name, String help, Supplier<? extends Number> value, String... labels) {
+        family(name, help, Type.COUNTER).metrics.put(labels(labels), value);
+    }
+
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, Type.HISTOGRAM).metrics.computeIfAbsent(labels(labels), key -> new LatencyHistogram());
+    }
+
+    // for histograms that are owned by another class
+    public void histogram(String name, String help, LatencyHistogram histogram, String... labels) {
+        family(name, help, Type.HISTOGRAM).metrics.put(labels(labels), histogram);
+    }
+
+    // the value is read on scrape, so existing counters of other classes need no second copy
+    public void gauge(String name, String help, Supplier<? extends Number> value, String... labels) {
+        family(name, help, Type.GAUGE).metrics.put(labels(labels), value);
+    }
+
+    public String scrape() {
+        StringBuilder builder = new StringBuilder();
+
+        families.forEach((name, family) -> {
+            builder.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            builder.append("# TYPE ").append(name).append(' ').append(family.type.name().toLowerCase()).append('\n');
+
+            family.metrics.forEach((labels, metric) -> {
+                switch (metric) {
+                    case LongAdder counter -> sample(builder, name, labels, counter.sum());
+                    case LatencyHistogram histogram -> histogram(builder, name, labels, histogram);
+                    case Supplier<?> supplier -> sample(builder, name, labels, ((Number) supplier.get()).doubleValue());
+                    default -> {}
+                }
+            });
+        });
+
+        return builder.toString();
+    }
+
+    private Family family(String name, String help, Type type) {
+        return families.computeIfAbsent(name, key -> new Family(help, type));
+    }
+
+    private void histogram(StringBuilder builder, String name, String labels, LatencyHistogram histogram) {
+        String separator = labels.isEmpty() ? "" : labels + ",";
+
+        long cumulative = 0;
+        for (int i = 0; i < histogram.buckets(); i++) {
+            cumulative += histogram.count(i);
+            sample(builder, name + "_bucket", separator + "le=\"" + histogram.upperBound(i) + "\"", cumulative);
+        }
+
+        cumulative += histogram.count(histogram.buckets());
+        sample(builder, name + "_bucket", separator + "le=\"+Inf\"", cumulative);
+        sample(builder, name + "_sum", labels, histogram.sumSeconds());
+        sample(builder, name + "_count", labels, cumulative);
+    }
+
+    private void sample(StringBuilder builder, String name, String labels, double value) {
+        builder.append(name);
+        if (!labels.isEmpty()) {
+            builder.append('{').append(labels).append('}');
+        }
+
+        builder.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            builder.append((long) value);
+        } else {
+            builder.append(value);
+        }
+
+        builder.append('\n');
+    }
+
+    private String labels(String... labels) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (!builder.isEmpty()) {
+                builder.append(',');
+            }
+
+            builder.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+
+        return builder.toString();
+    }
+
+    private enum Type {
+        COUNTER,
+        GAUGE,
+        HISTOGRAM
+    }
+
+    private static class Family {
+
+        private final Map<String, Object> metrics = new ConcurrentHashMap<>();
+
+        private final String help;
+        private final Type type;
+
+        private Family(String help, Type type) {
+            this.help = help;
+            this.type = type;
+        }
+
+    }
+
+}
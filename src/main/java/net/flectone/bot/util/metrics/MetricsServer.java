@@ -0,0 +1,85 @@
+package net.flectone.bot.util.metrics;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.RequiredArgsConstructor;
+import net.flectone.bot.config.Config;
+import net.flectone.bot.util.file.FileFacade;
+import net.flectone.bot.util.trace.Tracer;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class MetricsServer {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final FileFacade fileFacade;
+    private final MetricRegistry metricRegistry;
+    private final Tracer tracer;
+    private final Logger logger;
+
+    private HttpServer server;
+
+    public Config.Metrics config() {
+        return fileFacade.config().metrics();
+    }
+
+    public void start() {
+        if (!Boolean.TRUE.equals(config().enable())) return;
+
+        try {
+            server = HttpServer.create(new InetSocketAddress(config().host(), config().port()), 0);
+        } catch (IOException e) {
+            logger.warn("Failed to start metrics server on {}:{}", config().host(), config().port(), e);
+            return;
+        }
+
+        server.createContext(config().path(), exchange -> respond(exchange, metricRegistry::scrape));
+        server.createContext(config().path() + "/traces", exchange -> respond(exchange, this::traces));
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+
+        logger.info("✔ Metrics are available on http://{}:{}{}, recent relay traces on {}/traces", config().host(), config().port(), config().path(), config().path());
+    }
+
+    public void stop() {
+        if (server == null) return;
+
+        server.stop(0);
+    }
+
+    private String traces() {
+        StringBuilder builder = new StringBuilder();
+        tracer.recent().forEach(trace -> builder.append(trace).append('\n'));
+        return builder.toString();
+    }
+
+    private void respond(HttpExchange exchange, Supplier<String> response) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = response.get().getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package net.flectone.bot.util.metrics;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import net.flectone.bot.model.mapping.Platform;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+// stages of one relayed message: receive, route, render, dispatch and ack, labeled by the platform it came from
+@Singleton
+public class RelayMetrics {
+
+    private final Map<Platform, Source> sources = new EnumMap<>(Platform.class);
+
+    @Inject
+    public RelayMetrics(MetricRegistry metricRegistry) {
+        for (Platform platform : Platform.values()) {
+            sources.put(platform, new Source(metricRegistry, platform.name().toLowerCase()));
+        }
+    }
+
+    // the other stages are measured from the receive time of the message trace
+    public void received(Platform source) {
+        sources.get(source).received.increment();
+    }
+
+    public void routed(Platform source, long receivedAt, int targets) {
+        Source metrics = sources.get(source);
+        metrics.route.recordSince(receivedAt);
+
+        if (targets == 0) {
+            metrics.unrouted.increment();
+        }
+    }
+
+    public UnaryOperator<String> rendering(Platform source, UnaryOperator<String> formatter) {
+        LatencyHistogram render = sources.get(source).render;
+
+        return text -> {
+            long start = System.nanoTime();
+            String rendered = formatter.apply(text);
+            render.recordSince(start);
+            return rendered;
+        };
+    }
+
+    // dispatch is the time the send took, ack is the whole way from receiving the message
+    public void acknowledged(Platform source, long receivedAt, long dispatchedAt, boolean success) {
+        Source metrics = sources.get(source);
+        metrics.dispatch.recordSince(dispatchedAt);
+        metrics.ack.recordSince(receivedAt);
+
+        (success ? metrics.relayed : metrics.failed).increment();
+    }
+
+    private static class Source {
+
+        private final LongAdder received;
+        private final LongAdder unrouted;
+        private final LongAdder relayed;
+        private final LongAdder failed;
+        private final LatencyHistogram route;
+        private final LatencyHistogram render;
+        private final LatencyHistogram dispatch;
+        private final LatencyHistogram ack;
+
+        private Source(MetricRegistry metricRegistry, String source) {
+            this.received = metricRegistry.counter("flectonebot_relay_received_total", "Messages received from a platform", "source", source);
+            this.unrouted = metricRegistry.counter("flectonebot_relay_unrouted_total", "Received messages without a bridged target", "source", source);
+            this.relayed = metricRegistry.counter("flectonebot_relay_sent_total", "Messages sent to the other platform", "source", source, "result", "success");
+            this.failed = metricRegistry.counter("flectonebot_relay_sent_total", "Messages sent to the other platform", "source", source, "result", "failure");
+
+            String help = "Time of a relay stage in seconds";
+            this.route = metricRegistry.histogram("flectonebot_relay_stage_seconds", help, "source", source, "stage", "route");
+            this.render = metricRegistry.histogram("flectonebot_relay_stage_seconds", help, "source", source, "stage", "render");
+            this.dispatch = metricRegistry.histogram("flectonebot_relay_stage_seconds", help, "source", source, "stage", "dispatch");
+            this.ack = metricRegistry.histogram("flectonebot_relay_stage_seconds", help, "source", source, "stage", "ack");
+        }
+
+    }
+
+}
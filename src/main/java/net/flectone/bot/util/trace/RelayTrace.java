@@ -0,0 +1,84 @@
+package net.flectone.bot.util.trace;
+
+import lombok.Getter;
+import net.flectone.bot.model.mapping.Platform;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// one relayed message, stages are stored as nanoseconds since it was received
+public class RelayTrace {
+
+    public enum Stage {
+        ROUTE,
+        RENDER,
+        // the request left its send queue, with several targets the last one to leave
+        DISPATCH,
+        ACK
+    }
+
+    // written from the http callback threads and read by the /traces dump
+    private final AtomicLongArray stages = new AtomicLongArray(Stage.values().length);
+    private final AtomicInteger pending = new AtomicInteger();
+
+    @Getter private final long id;
+    @Getter private final Platform source;
+    @Getter private final String chat;
+    @Getter private final long receivedAt;
+    @Getter private final long receivedTime;
+
+    private volatile boolean failed;
+
+    public RelayTrace(long id, Platform source, String chat) {
+        this.id = id;
+        this.source = source;
+        this.chat = chat;
+        this.receivedAt = System.nanoTime();
+        this.receivedTime = System.currentTimeMillis();
+    }
+
+    public void mark(Stage stage) {
+        stages.set(stage.ordinal(), System.nanoTime() - receivedAt);
+    }
+
+    // the message is acknowledged once every target has answered
+    public void expect(int targets) {
+        pending.set(targets);
+    }
+
+    boolean acknowledge(boolean success) {
+        if (!success) {
+            failed = true;
+        }
+
+        if (pending.decrementAndGet() != 0) return false;
+
+        mark(Stage.ACK);
+        return true;
+    }
+
+    public long getDuration() {
+        return stages.get(Stage.ACK.ordinal());
+    }
+
+    public String getIdString() {
+        return Long.toHexString(id);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder()
+                .append("trace=").append(getIdString())
+                .append(" source=").append(source)
+                .append(" chat=").append(chat)
+                .append(" received_at=").append(receivedTime);
+
+        for (Stage stage : Stage.values()) {
+            builder.append(' ').append(stage.name().toLowerCase()).append('=')
+                    .append(String.format("%.3fms", stages.get(stage.ordinal()) / 1_000_000.0));
+        }
+
+        return builder.append(" failed=").append(failed).toString();
+    }
+
+}
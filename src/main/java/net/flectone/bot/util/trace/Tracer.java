@@ -0,0 +1,98 @@
+package net.flectone.bot.util.trace;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import lombok.RequiredArgsConstructor;
+import net.flectone.bot.config.Config;
+import net.flectone.bot.model.mapping.Platform;
+import net.flectone.bot.util.file.FileFacade;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// completed traces are kept in a ring buffer, the newest ones replace the oldest
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class Tracer {
+
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong position = new AtomicLong();
+
+    private final FileFacade fileFacade;
+    private final Logger logger;
+
+    private volatile AtomicReferenceArray<RelayTrace> buffer = new AtomicReferenceArray<>(0);
+
+    public Config.Trace config() {
+        return fileFacade.config().trace();
+    }
+
+    public RelayTrace start(Platform source, String chat) {
+        return new RelayTrace(ids.incrementAndGet(), source, chat);
+    }
+
+    // relayed messages are logged only if enabled, and then only every sample_rate-th of them
+    public boolean isLogged(RelayTrace trace) {
+        Config.Log log = fileFacade.config().log();
+        if (!Boolean.TRUE.equals(log.relay()) || !logger.isInfoEnabled()) return false;
+
+        return trace.getId() % Math.max(1, log.sampleRate()) == 0;
+    }
+
+    public void acknowledge(RelayTrace trace, boolean success) {
+        if (trace.acknowledge(success)) {
+            complete(trace);
+        }
+    }
+
+    // oldest first
+    public List<RelayTrace> recent() {
+        AtomicReferenceArray<RelayTrace> current = buffer;
+
+        List<RelayTrace> traces = new ArrayList<>(current.length());
+        for (int i = 0; i < current.length(); i++) {
+            RelayTrace trace = current.get(i);
+            if (trace != null) {
+                traces.add(trace);
+            }
+        }
+
+        traces.sort(Comparator.comparingLong(RelayTrace::getId));
+        return traces;
+    }
+
+    private void complete(RelayTrace trace) {
+        Config.Trace config = config();
+        if (!Boolean.TRUE.equals(config.enable())) return;
+
+        if (trace.getDuration() > TimeUnit.MILLISECONDS.toNanos(config.slowThreshold())) {
+            logger.warn("Slow relay {}", trace);
+        }
+
+        AtomicReferenceArray<RelayTrace> current = buffer(config.bufferSize());
+        if (current.length() == 0) return;
+
+        current.set((int) (position.getAndIncrement() % current.length()), trace);
+    }
+
+    // a reload with another size starts a new buffer
+    private AtomicReferenceArray<RelayTrace> buffer(int size) {
+        AtomicReferenceArray<RelayTrace> current = buffer;
+        if (current.length() == Math.max(0, size)) return current;
+
+        synchronized (this) {
+            if (buffer.length() != Math.max(0, size)) {
+                buffer = new AtomicReferenceArray<>(Math.max(0, size));
+                position.set(0);
+            }
+
+            return buffer;
+        }
+    }
+
+}